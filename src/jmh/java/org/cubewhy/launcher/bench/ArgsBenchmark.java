@@ -0,0 +1,59 @@
+package org.cubewhy.launcher.bench;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.cubewhy.launcher.LaunchProfile;
+import org.cubewhy.launcher.LunarClient;
+import org.cubewhy.launcher.game.MinecraftArgs;
+import org.cubewhy.lunarcn.JavaAgent;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line building from a canned launch API response (no network, natives are not unzipped)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArgsBenchmark {
+    private static final String BASE_DIR = "/home/user/.cubewhy/lunarcn/offline/1.8";
+    private static final String[] JVM_ARGS = {"-Xmx3G", "-Xms1G"};
+    private static final String[] PROGRAM_ARGS = {};
+    private static final JavaAgent[] AGENTS = {};
+
+    private JsonObject versionJson;
+    private LaunchProfile profile;
+    private MinecraftArgs minecraftArgs;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        try (Reader reader = Fixtures.resource("/fixtures/launch-1.8.9.json")) {
+            versionJson = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        profile = LaunchProfile.fromVersionJson("1.8.9", "master", "lunar", versionJson);
+        minecraftArgs = new MinecraftArgs("/home/user/.minecraft", "/home/user/.minecraft/textures", 854, 480);
+    }
+
+    @Benchmark
+    public LaunchProfile profileFromJson() {
+        return LaunchProfile.fromVersionJson("1.8.9", "master", "lunar", versionJson);
+    }
+
+    @Benchmark
+    public List<String> argsList() throws IOException {
+        return LunarClient.getArgsList(profile, BASE_DIR, minecraftArgs, "java", JVM_ARGS, PROGRAM_ARGS, AGENTS, false);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public String args() throws IOException {
+        return LunarClient.getArgs(profile, BASE_DIR, minecraftArgs, "java", JVM_ARGS, PROGRAM_ARGS, AGENTS, false);
+    }
+}
@@ -0,0 +1,62 @@
+package org.cubewhy.launcher.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Offline fixtures shared by the benchmarks, generated from a fixed seed so runs are comparable
+ */
+final class Fixtures {
+    static final long SEED = 0x4c756e6172L;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Write a file of seeded random bytes
+     */
+    static File randomFile(File file, long size) throws IOException {
+        Random random = new Random(SEED ^ size);
+        byte[] chunk = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            long left = size;
+            while (left > 0) {
+                random.nextBytes(chunk);
+                int n = (int) Math.min(chunk.length, left);
+                out.write(chunk, 0, n);
+                left -= n;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Open a classpath resource from src/jmh/resources
+     */
+    static Reader resource(String name) {
+        InputStream in = Fixtures.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IllegalStateException("Missing fixture " + name);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
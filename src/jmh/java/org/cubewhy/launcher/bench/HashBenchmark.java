@@ -0,0 +1,49 @@
+package org.cubewhy.launcher.bench;
+
+import org.cubewhy.launcher.utils.FileHasher;
+import org.cubewhy.launcher.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-1 of a small texture-sized file and a large jar-sized file
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+    @Param({"4096", "67108864"})
+    public long size;
+
+    private Path dir;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("launcherlib-hash");
+        file = Fixtures.randomFile(new File(dir.toFile(), "blob.bin"), size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public String fileUtilsSha1() {
+        return FileUtils.sha1(file);
+    }
+
+    @Benchmark
+    public String fileHasherSha1() throws IOException {
+        return FileHasher.sha1(file);
+    }
+}
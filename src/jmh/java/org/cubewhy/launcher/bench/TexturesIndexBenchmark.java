@@ -0,0 +1,46 @@
+package org.cubewhy.launcher.bench;
+
+import com.google.gson.JsonObject;
+import org.cubewhy.launcher.LunarDownloader;
+import org.cubewhy.launcher.utils.StringUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the textures' index ("filename hashcode" per line)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TexturesIndexBenchmark {
+    @Param({"20000"})
+    public int lines;
+
+    private String index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(Fixtures.SEED);
+        byte[] hash = new byte[20];
+        StringBuilder sb = new StringBuilder(lines * 90);
+        for (int i = 0; i < lines; i++) {
+            random.nextBytes(hash);
+            String sha1 = StringUtils.toHex(hash);
+            sb.append("assets/minecraft/textures/").append(sha1, 0, 2).append('/').append(i).append(".png ")
+                    .append(sha1).append('\n');
+        }
+        index = sb.toString();
+    }
+
+    @Benchmark
+    public JsonObject parse() throws IOException {
+        return LunarDownloader.parseLunarTexturesIndex(LunarDownloader.getLunarTexturesBaseUrl(), new StringReader(index));
+    }
+}
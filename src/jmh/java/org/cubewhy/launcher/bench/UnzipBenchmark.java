@@ -0,0 +1,71 @@
+package org.cubewhy.launcher.bench;
+
+import org.cubewhy.launcher.utils.ZipUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Extraction of a synthetic natives zip (a few large libraries plus many small files)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnzipBenchmark {
+    private Path dir;
+    private File zip;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("launcherlib-unzip");
+        zip = new File(dir.toFile(), "natives.zip");
+        output = new File(dir.toFile(), "natives");
+        Random random = new Random(Fixtures.SEED);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip.toPath()))) {
+            for (int i = 0; i < 8; i++) {
+                writeEntry(out, "lib" + i + ".dll", 2 * 1024 * 1024, random);
+            }
+            for (int i = 0; i < 200; i++) {
+                writeEntry(out, "META-INF/resources/" + i + ".txt", 4096, random);
+            }
+        }
+    }
+
+    private static void writeEntry(ZipOutputStream out, String name, int size, Random random) throws IOException {
+        byte[] data = new byte[size];
+        // half random, half zeros, so the deflater has something to do
+        random.nextBytes(data);
+        Arrays.fill(data, size / 2, size, (byte) 0);
+        out.putNextEntry(new ZipEntry(name));
+        out.write(data);
+        out.closeEntry();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(dir);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() throws IOException {
+        Fixtures.deleteRecursively(output.toPath());
+    }
+
+    @Benchmark
+    public File unZip() throws IOException {
+        ZipUtils.unZip(zip, output);
+        return output;
+    }
+}
@@ -0,0 +1,224 @@
+package org.cubewhy.launcher;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.cubewhy.launcher.download.ArtifactStore;
+import org.cubewhy.launcher.download.DownloadEngine;
+import org.cubewhy.launcher.download.DownloadResult;
+import org.cubewhy.launcher.download.SyncStats;
+import org.cubewhy.launcher.game.MinecraftArgs;
+import org.cubewhy.launcher.game.MinecraftDownloader;
+import org.cubewhy.launcher.process.GameProcess;
+import org.cubewhy.launcher.process.LineListener;
+import org.cubewhy.lunarcn.JavaAgent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking versions of the LunarDownloader, MinecraftDownloader and LunarClient calls
+ * Every call runs on the executor, IOExceptions complete the future exceptionally
+ */
+public class AsyncLauncher {
+    private static volatile AsyncLauncher defaultLauncher;
+
+    private final Executor executor;
+
+    public interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    /**
+     * Create an async launcher
+     *
+     * @param executor executor of the calls
+     */
+    public AsyncLauncher(@NotNull Executor executor) {
+        this.executor = executor;
+    }
+
+    public AsyncLauncher() {
+        this(defaultExecutor());
+    }
+
+    /**
+     * Get the shared launcher, created with defaultExecutor on first use
+     *
+     * @return launcher
+     */
+    @NotNull
+    public static AsyncLauncher getDefault() {
+        AsyncLauncher launcher = defaultLauncher;
+        if (launcher == null) {
+            synchronized (AsyncLauncher.class) {
+                if (defaultLauncher == null) {
+                    defaultLauncher = new AsyncLauncher();
+                }
+                launcher = defaultLauncher;
+            }
+        }
+        return launcher;
+    }
+
+    public static void setDefault(@NotNull AsyncLauncher launcher) {
+        defaultLauncher = launcher;
+    }
+
+    /**
+     * Virtual threads if the JDK has them (21+), otherwise a cached pool of daemon threads
+     *
+     * @return executor
+     */
+    @NotNull
+    public static ExecutorService defaultExecutor() {
+        try {
+            // looked up by reflection, this library is built for Java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "LauncherLib-Async-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @NotNull
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Run a blocking call on the executor
+     *
+     * @param supplier the call
+     * @return result of the call
+     */
+    @NotNull
+    public <T> CompletableFuture<T> supply(@NotNull IOSupplier<T> supplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return supplier.get();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // Metadata
+
+    public CompletableFuture<JsonElement> getVersionJson(String version, String branch, String module) {
+        return supply(() -> LunarDownloader.getVersionJson(version, branch, module));
+    }
+
+    public CompletableFuture<JsonElement> getMetadata() {
+        return supply(LunarDownloader::getMetadata);
+    }
+
+    public CompletableFuture<LaunchProfile> getLaunchProfile(String version, String branch, String module) {
+        return supply(() -> LaunchProfile.get(version, branch, module));
+    }
+
+    public CompletableFuture<JsonObject> getLunarArtifacts(String version, String branch, String module) {
+        return supply(() -> LunarDownloader.getLunarArtifacts(version, branch, module));
+    }
+
+    public CompletableFuture<JsonElement> getLunarTexturesIndex(String version, String branch, String module) {
+        return supply(() -> LunarDownloader.getLunarTexturesIndex(version, branch, module));
+    }
+
+    public CompletableFuture<JsonObject> getMinecraftVersionJson(String version) {
+        return supply(() -> MinecraftDownloader.getVersionJson(version));
+    }
+
+    // Sync
+
+    /**
+     * Get the artifact list and download the artifacts
+     *
+     * @param version      Minecraft version
+     * @param branch       LunarClient branch
+     * @param module       LunarClient addon
+     * @param downloadPath install dir
+     * @param update       verify existing files
+     * @param engine       download engine
+     * @return result of the download
+     */
+    public CompletableFuture<DownloadResult> downloadLunarArtifacts(String version, String branch, String module, File downloadPath, boolean update, @NotNull DownloadEngine engine) {
+        return getLunarArtifacts(version, branch, module)
+                .thenApplyAsync(artifacts -> LunarDownloader.downloadLunarArtifacts(downloadPath, artifacts, update, engine), executor);
+    }
+
+    public CompletableFuture<DownloadResult> downloadLunarArtifacts(String version, String branch, String module, File downloadPath, boolean update) {
+        return downloadLunarArtifacts(version, branch, module, downloadPath, update, new DownloadEngine().setStore(ArtifactStore.getDefault()));
+    }
+
+    /**
+     * Get the textures' index and sync the textures
+     *
+     * @param version      Minecraft version
+     * @param branch       LunarClient branch
+     * @param module       LunarClient addon
+     * @param downloadPath textures dir
+     * @param update       verify existing files
+     * @return statistics
+     */
+    public CompletableFuture<SyncStats> syncLunarTextures(String version, String branch, String module, File downloadPath, boolean update) {
+        return getLunarTexturesIndex(version, branch, module)
+                .thenApplyAsync(index -> LunarDownloader.syncLunarTextures(downloadPath, Objects.requireNonNull(index, "Empty textures index"), update), executor);
+    }
+
+    public CompletableFuture<SyncStats> downloadAssets(String version, File assetsDir) {
+        return supply(() -> MinecraftDownloader.downloadAssets(version, assetsDir));
+    }
+
+    public CompletableFuture<SyncStats> downloadLibraries(String version, File libraryDir) {
+        return supply(() -> MinecraftDownloader.downloadLibrariesOnline(version, libraryDir));
+    }
+
+    /**
+     * Resolve the launch profile, download the artifacts and the textures at the same time
+     * Completes once all of them are done, textures that failed don't fail the future (not needed to start)
+     *
+     * @param version     Minecraft version
+     * @param branch      LunarClient branch
+     * @param module      LunarClient addon
+     * @param installDir  artifacts dir
+     * @param texturesDir textures dir, null to skip the textures
+     * @param update      verify existing files
+     * @return the launch profile
+     */
+    public CompletableFuture<LaunchProfile> prepare(String version, String branch, String module, File installDir, @Nullable File texturesDir, boolean update) {
+        CompletableFuture<LaunchProfile> profile = getLaunchProfile(version, branch, module);
+        CompletableFuture<DownloadResult> artifacts = downloadLunarArtifacts(version, branch, module, installDir, update);
+        CompletableFuture<?> textures = texturesDir == null ? CompletableFuture.completedFuture(null)
+                : syncLunarTextures(version, branch, module, texturesDir, update).exceptionally(e -> null);
+        return CompletableFuture.allOf(profile, artifacts, textures).thenApply(ignored -> {
+            DownloadResult result = artifacts.join();
+            if (!result.isSuccess()) {
+                throw new CompletionException(new IOException(result.getFailures().size() + " of " + result.getTotal() + " artifacts failed to download"));
+            }
+            return profile.join();
+        });
+    }
+
+    // Launch
+
+    /**
+     * @deprecated the output is only available from a GameProcess, use startGame
+     */
+    @Deprecated
+    public CompletableFuture<Process> launch(String version, String module, String branch, String baseDir, MinecraftArgs minecraftArgs, String java, String[] jvmArgs, String[] programArgs, JavaAgent[] agents) {
+        return supply(() -> LunarClient.launch(version, module, branch, baseDir, minecraftArgs, java, jvmArgs, programArgs, agents));
+    }
+
+    public CompletableFuture<GameProcess> startGame(String version, String module, String branch, String baseDir, MinecraftArgs minecraftArgs, String java, String[] jvmArgs, String[] programArgs, JavaAgent[] agents, File logFile, LineListener listener) {
+        return supply(() -> LunarClient.startGame(version, module, branch, baseDir, minecraftArgs, java, jvmArgs, programArgs, agents, logFile, listener));
+    }
+}
@@ -0,0 +1,160 @@
+package org.cubewhy.launcher;
+
+import org.cubewhy.launcher.process.GameProcess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Lifecycle of an instance launched by InstanceOrchestrator
+ */
+public class GameInstance {
+    public enum State {
+        /**
+         * Waiting for a cold start slot
+         */
+        QUEUED,
+        /**
+         * Process started, still loading
+         */
+        STARTING,
+        /**
+         * Loaded (ready line seen or cold start timeout)
+         */
+        RUNNING,
+        /**
+         * Process exited
+         */
+        EXITED,
+        /**
+         * Process couldn't be started
+         */
+        FAILED
+    }
+
+    public final InstanceSpec spec;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch exited = new CountDownLatch(1);
+    private volatile State state = State.QUEUED;
+    private volatile GameProcess process;
+    private volatile Throwable error;
+    private volatile int exitCode = -1;
+    private final long queuedAt = System.nanoTime();
+    private volatile long startMillis = -1;
+
+    GameInstance(@NotNull InstanceSpec spec) {
+        this.spec = spec;
+    }
+
+    @NotNull
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the process, null until STARTING
+     */
+    @Nullable
+    public GameProcess getProcess() {
+        return process;
+    }
+
+    /**
+     * @return why the launch failed, null if it didn't
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return exit code, -1 until EXITED
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * @return millis from being queued to RUNNING, -1 until then
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public boolean isAlive() {
+        GameProcess p = process;
+        return p != null && p.isAlive();
+    }
+
+    /**
+     * Wait until the instance is RUNNING, EXITED or FAILED
+     *
+     * @return true if it left the cold start in time
+     */
+    public boolean awaitStarted(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return started.await(timeout, unit);
+    }
+
+    /**
+     * Wait until the instance is EXITED or FAILED
+     *
+     * @return true if it ended in time
+     */
+    public boolean awaitExit(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return exited.await(timeout, unit);
+    }
+
+    public void destroy() {
+        GameProcess p = process;
+        if (p != null) {
+            p.destroy();
+        }
+    }
+
+    // every transition notifies before it releases the waiters, so awaitStarted/awaitExit return after the listener saw the state
+
+    synchronized void starting(@NotNull GameProcess process, @NotNull Consumer<State> notify) {
+        this.process = process;
+        this.state = State.STARTING;
+        notify.accept(State.STARTING);
+    }
+
+    /**
+     * @return true if the state changed to RUNNING now
+     */
+    synchronized boolean running(@NotNull Consumer<State> notify) {
+        if (state != State.STARTING) {
+            return false;
+        }
+        state = State.RUNNING;
+        startMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedAt);
+        notify.accept(State.RUNNING);
+        started.countDown();
+        return true;
+    }
+
+    synchronized void exited(int code, @NotNull Consumer<State> notify) {
+        exitCode = code;
+        state = State.EXITED;
+        notify.accept(State.EXITED);
+        started.countDown();
+        exited.countDown();
+    }
+
+    synchronized void failed(@NotNull Throwable e, @NotNull Consumer<State> notify) {
+        error = e;
+        state = State.FAILED;
+        notify.accept(State.FAILED);
+        started.countDown();
+        exited.countDown();
+    }
+
+    @Override
+    public String toString() {
+        return spec.id + " (" + state + ")";
+    }
+}
@@ -0,0 +1,369 @@
+package org.cubewhy.launcher;
+
+import com.google.gson.JsonObject;
+import org.cubewhy.launcher.download.DownloadResult;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.process.GameProcess;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Launch many instances from one shared install
+ * The install is verified and the natives are unzipped once, then at most maxColdStarts instances
+ * load at the same time (until their ready line is printed, or the cold start timeout)
+ * Close it to stop launching queued instances, instances already started keep running
+ */
+public class InstanceOrchestrator implements AutoCloseable {
+    public final String version;
+    public final String branch;
+    public final String module;
+    public final String baseDir;
+    public final String java;
+
+    private int maxColdStarts = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private long coldStartTimeout = TimeUnit.SECONDS.toMillis(60);
+    private Predicate<String> readyLine = line -> line.contains("Sound engine started");
+    private boolean verify = true;
+    private InstanceListener listener;
+
+    private final Map<String, GameInstance> instances = new ConcurrentHashMap<>();
+    private final ExecutorService launcher = Executors.newCachedThreadPool(new DaemonThreadFactory("LauncherLib-Orchestrator"));
+    private Semaphore coldStarts;
+    private LaunchProfile profile;
+
+    public interface InstanceListener {
+        /**
+         * Called on every state change of an instance, on a background thread
+         * Changes of one instance are reported in order
+         *
+         * @param instance the instance
+         * @param state    the new state, getState may already be newer
+         */
+        void onStateChanged(@NotNull GameInstance instance, @NotNull GameInstance.State state);
+    }
+
+    /**
+     * Create an orchestrator
+     *
+     * @param version Minecraft version
+     * @param branch  LunarClient branch
+     * @param module  LunarClient addon
+     * @param baseDir Game artifacts dir, shared by all instances
+     * @param java    Java executable
+     */
+    public InstanceOrchestrator(String version, String branch, String module, String baseDir, String java) {
+        this.version = version;
+        this.branch = branch;
+        this.module = module;
+        this.baseDir = baseDir;
+        this.java = java;
+    }
+
+    /**
+     * Set how many instances can load at the same time
+     *
+     * @param maxColdStarts max count, must be set before the first launch
+     * @return this
+     * @throws IllegalStateException if already prepared
+     */
+    public synchronized InstanceOrchestrator setMaxColdStarts(int maxColdStarts) {
+        if (maxColdStarts < 1) {
+            throw new IllegalArgumentException("Bad cold start limit");
+        }
+        if (coldStarts != null) {
+            throw new IllegalStateException("Cold start limit must be set before the first launch");
+        }
+        this.maxColdStarts = maxColdStarts;
+        return this;
+    }
+
+    /**
+     * An instance that printed no ready line is considered loaded after this time
+     *
+     * @param millis timeout
+     * @return this
+     */
+    public InstanceOrchestrator setColdStartTimeout(long millis) {
+        this.coldStartTimeout = millis;
+        return this;
+    }
+
+    /**
+     * Set the line that marks the end of the cold start
+     *
+     * @param readyLine line matcher, default matches "Sound engine started"
+     * @return this
+     */
+    public InstanceOrchestrator setReadyLine(@NotNull Predicate<String> readyLine) {
+        this.readyLine = readyLine;
+        return this;
+    }
+
+    /**
+     * Download and verify the artifacts before the first launch (default)
+     *
+     * @param verify false if the install is known to be complete
+     * @return this
+     */
+    public InstanceOrchestrator setVerify(boolean verify) {
+        this.verify = verify;
+        return this;
+    }
+
+    /**
+     * Use this profile instead of LaunchProfile.get
+     *
+     * @param profile launch profile
+     * @return this
+     */
+    public synchronized InstanceOrchestrator setProfile(@NotNull LaunchProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    public InstanceOrchestrator setListener(InstanceListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Resolve the profile, verify the install and unzip the natives, only done once
+     *
+     * @return the launch profile
+     */
+    @NotNull
+    public synchronized LaunchProfile prepare() throws IOException {
+        if (coldStarts != null) {
+            return profile;
+        }
+        if (profile == null) {
+            profile = LaunchProfile.get(version, branch, module);
+        }
+        File installDir = new File(baseDir);
+        if (verify) {
+            JsonObject artifacts = LunarDownloader.getLunarArtifacts(version, branch, module);
+            DownloadResult result = LunarDownloader.downloadLunarArtifacts(installDir, artifacts, true);
+            if (!result.isSuccess()) {
+                throw new IOException(result.getFailures().size() + " of " + result.getTotal() + " artifacts failed to download");
+            }
+        }
+        File nativesZip = new File(installDir, profile.nativesZip);
+        if (verify || nativesZip.isFile()) {
+            LunarClient.unzipNatives(nativesZip, baseDir);
+        }
+        coldStarts = new Semaphore(maxColdStarts, true);
+        return profile;
+    }
+
+    /**
+     * Launch an instance, returns at once, the instance waits for a cold start slot
+     *
+     * @param spec instance
+     * @return the instance
+     */
+    @NotNull
+    public GameInstance launch(@NotNull InstanceSpec spec) throws IOException {
+        if (launcher.isShutdown()) {
+            throw new IllegalStateException("Orchestrator closed");
+        }
+        LaunchProfile profile = prepare();
+        GameInstance instance = new GameInstance(spec);
+        if (instances.putIfAbsent(spec.id, instance) != null) {
+            throw new IllegalArgumentException("Duplicate instance " + spec.id);
+        }
+        notifyListener(instance, GameInstance.State.QUEUED);
+        launcher.execute(() -> start(profile, instance));
+        return instance;
+    }
+
+    /**
+     * Launch many instances
+     *
+     * @param specs instances
+     * @return the instances, in order
+     */
+    @NotNull
+    public List<GameInstance> launchAll(@NotNull Collection<InstanceSpec> specs) throws IOException {
+        List<GameInstance> out = new ArrayList<>();
+        for (InstanceSpec spec : specs) {
+            out.add(launch(spec));
+        }
+        return out;
+    }
+
+    private void start(@NotNull LaunchProfile profile, @NotNull GameInstance instance) {
+        InstanceSpec spec = instance.spec;
+        AtomicBoolean slot = new AtomicBoolean(false);
+        try {
+            coldStarts.acquire();
+            slot.set(true);
+            List<String> args = LunarClient.getArgsList(profile, baseDir, spec.minecraftArgs, java, spec.jvmArgs, spec.programArgs, spec.agents, false);
+            GameProcess process;
+            try (Metrics.Span span = Metrics.span(Metrics.PHASE_LAUNCH)) {
+                try {
+                    process = GameProcess.start(args, null, GameProcess.DEFAULT_BUFFER_LINES, spec.logFile, (line, error) -> {
+                        if (instance.getState() == GameInstance.State.STARTING && readyLine.test(line)) {
+                            ready(instance, slot);
+                        }
+                    });
+                } catch (IOException | RuntimeException e) {
+                    span.fail();
+                    throw e;
+                }
+            }
+            // notified under the instance lock, so RUNNING can't be reported before STARTING
+            instance.starting(process, state -> notifyListener(instance, state));
+            // a ready line may already have been printed before the state changed
+            for (String line : process.getLog().getLines()) {
+                if (readyLine.test(line)) {
+                    ready(instance, slot);
+                    break;
+                }
+            }
+            new DaemonThreadFactory("LauncherLib-Instance-" + spec.id).newThread(() -> waitForExit(instance, slot)).start();
+            if (!instance.awaitStarted(coldStartTimeout, TimeUnit.MILLISECONDS)) {
+                ready(instance, slot); // no ready line, give the slot to the next instance anyway
+            }
+        } catch (IOException | RuntimeException e) {
+            failed(instance, slot, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed(instance, slot, e);
+        }
+    }
+
+    private void failed(@NotNull GameInstance instance, @NotNull AtomicBoolean slot, @NotNull Throwable e) {
+        release(slot);
+        instance.failed(e, state -> notifyListener(instance, state));
+    }
+
+    private void ready(@NotNull GameInstance instance, @NotNull AtomicBoolean slot) {
+        if (instance.running(state -> notifyListener(instance, state))) {
+            release(slot);
+        }
+    }
+
+    private void waitForExit(@NotNull GameInstance instance, @NotNull AtomicBoolean slot) {
+        GameProcess process = instance.getProcess();
+        try {
+            int code = process.waitFor();
+            release(slot);
+            instance.exited(code, state -> notifyListener(instance, state));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void release(@NotNull AtomicBoolean slot) {
+        if (slot.compareAndSet(true, false)) {
+            coldStarts.release();
+        }
+    }
+
+    private void notifyListener(@NotNull GameInstance instance, @NotNull GameInstance.State state) {
+        InstanceListener l = listener;
+        if (l != null) {
+            try {
+                l.onStateChanged(instance, state);
+            } catch (RuntimeException ignored) {
+                // a listener must never break the launch
+            }
+        }
+    }
+
+    /**
+     * Get an instance
+     *
+     * @param id instance id
+     * @return instance, null if unknown
+     */
+    public GameInstance getInstance(@NotNull String id) {
+        return instances.get(id);
+    }
+
+    @NotNull
+    public List<GameInstance> getInstances() {
+        return new ArrayList<>(instances.values());
+    }
+
+    /**
+     * Count instances loading or waiting to load
+     *
+     * @return count
+     */
+    public int getColdStarting() {
+        int count = 0;
+        for (GameInstance instance : instances.values()) {
+            GameInstance.State state = instance.getState();
+            if (state == GameInstance.State.QUEUED || state == GameInstance.State.STARTING) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Wait until every instance left the cold start
+     *
+     * @return true if all of them did in time
+     */
+    public boolean awaitAllStarted(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (GameInstance instance : getInstances()) {
+            if (!instance.awaitStarted(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Kill every instance
+     */
+    public void destroyAll() {
+        for (GameInstance instance : instances.values()) {
+            instance.destroy();
+        }
+    }
+
+    /**
+     * Stop the launch threads, queued instances fail, started instances keep running
+     */
+    @Override
+    public void close() {
+        launcher.shutdownNow();
+    }
+
+    /**
+     * Forget the instances that exited or failed
+     */
+    public void removeEnded() {
+        instances.values().removeIf(instance -> instance.getState() == GameInstance.State.EXITED || instance.getState() == GameInstance.State.FAILED);
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NotNull Runnable r) {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
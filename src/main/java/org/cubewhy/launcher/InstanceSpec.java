@@ -0,0 +1,41 @@
+package org.cubewhy.launcher;
+
+import org.cubewhy.launcher.game.MinecraftArgs;
+import org.cubewhy.lunarcn.JavaAgent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+/**
+ * One game instance to launch with InstanceOrchestrator
+ */
+public class InstanceSpec {
+    public final String id;
+    public final MinecraftArgs minecraftArgs;
+    public final String[] jvmArgs;
+    public final String[] programArgs;
+    public final JavaAgent[] agents;
+    public final File logFile;
+
+    /**
+     * @param id            instance id, unique in the orchestrator
+     * @param minecraftArgs Minecraft args (own gameDir per instance)
+     * @param jvmArgs       JVM args
+     * @param programArgs   Game args
+     * @param agents        JavaAgents
+     * @param logFile       write the output to this file, nullable
+     */
+    public InstanceSpec(@NotNull String id, @NotNull MinecraftArgs minecraftArgs, @NotNull String[] jvmArgs, @NotNull String[] programArgs, @NotNull JavaAgent[] agents, @Nullable File logFile) {
+        this.id = id;
+        this.minecraftArgs = minecraftArgs;
+        this.jvmArgs = jvmArgs;
+        this.programArgs = programArgs;
+        this.agents = agents;
+        this.logFile = logFile;
+    }
+
+    public InstanceSpec(@NotNull String id, @NotNull MinecraftArgs minecraftArgs) {
+        this(id, minecraftArgs, new String[0], new String[0], new JavaAgent[0], null);
+    }
+}
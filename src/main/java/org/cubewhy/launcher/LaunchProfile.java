@@ -0,0 +1,285 @@
+package org.cubewhy.launcher;
+
+import com.google.gson.*;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything needed to build the command line of a LunarClient version
+ * Resolved from the launch API once, saved to disk and reused by later launches
+ */
+public class LaunchProfile {
+    public static final File profilesDir = new File(LunarDir.lunarDir, "profiles");
+    public static final long REFRESH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private static volatile File dir = profilesDir;
+    private static final ConcurrentMap<String, LaunchProfile> profiles = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Boolean> refreshing = new ConcurrentHashMap<>();
+
+    public final String version;
+    public final String branch;
+    public final String module;
+    public final List<String> jvmArgs;
+    public final List<String> classpath;
+    public final List<String> externalFiles;
+    public final String nativesZip;
+    public final String mainClass;
+    public final boolean ichor;
+    public final long resolvedAt;
+
+    public LaunchProfile(String version, String branch, String module, List<String> jvmArgs, List<String> classpath,
+                         List<String> externalFiles, String nativesZip, String mainClass, boolean ichor, long resolvedAt) {
+        this.version = version;
+        this.branch = branch;
+        this.module = module;
+        this.jvmArgs = Collections.unmodifiableList(new ArrayList<>(jvmArgs));
+        this.classpath = Collections.unmodifiableList(new ArrayList<>(classpath));
+        this.externalFiles = Collections.unmodifiableList(new ArrayList<>(externalFiles));
+        this.nativesZip = nativesZip;
+        this.mainClass = mainClass;
+        this.ichor = ichor;
+        this.resolvedAt = resolvedAt;
+    }
+
+    /**
+     * Get the profile of a version
+     * A saved profile is used at once (and refreshed in the background if it is old),
+     * the launch API is only waited for if there is no saved profile
+     *
+     * @param version Minecraft version
+     * @param branch  LunarClient branch
+     * @param module  LunarClient addon
+     * @return profile
+     */
+    @NotNull
+    public static LaunchProfile get(String version, String branch, String module) throws IOException {
+        String key = keyOf(version, branch, module);
+        LaunchProfile profile = profiles.get(key);
+        if (profile == null) {
+            profile = load(fileOf(version, branch, module));
+            if (profile == null) {
+                Metrics.increment(Metrics.COUNTER_PROFILE_MISS);
+                return resolve(version, branch, module);
+            }
+            profiles.putIfAbsent(key, profile);
+        }
+        Metrics.increment(Metrics.COUNTER_PROFILE_HIT);
+        if (System.currentTimeMillis() - profile.resolvedAt > REFRESH_INTERVAL) {
+            refreshInBackground(version, branch, module);
+        }
+        return profile;
+    }
+
+    /**
+     * Keep the profiles somewhere else, the profiles in memory are dropped
+     *
+     * @param directory profiles dir, default profilesDir
+     */
+    public static synchronized void setProfilesDir(@NotNull File directory) {
+        dir = directory;
+        profiles.clear();
+    }
+
+    /**
+     * Resolve the profile from the launch API and save it
+     *
+     * @param version Minecraft version
+     * @param branch  LunarClient branch
+     * @param module  LunarClient addon
+     * @return profile
+     */
+    @NotNull
+    public static LaunchProfile resolve(String version, String branch, String module) throws IOException {
+        LaunchProfile profile;
+        try (Metrics.Span span = Metrics.span(Metrics.PHASE_PROFILE)) {
+            try {
+                JsonObject versionJson = Objects.requireNonNull(LunarDownloader.getVersionJson(version, branch, module)).getAsJsonObject();
+                profile = fromVersionJson(version, branch, module, versionJson);
+            } catch (IOException | RuntimeException e) {
+                span.fail();
+                throw e;
+            }
+        }
+        profiles.put(keyOf(version, branch, module), profile);
+        profile.saveQuietly();
+        return profile;
+    }
+
+    /**
+     * Build a profile from the response of the launch API
+     *
+     * @param version     Minecraft version
+     * @param branch      LunarClient branch
+     * @param module      LunarClient addon
+     * @param versionJson see LunarDownloader.getVersionJson
+     * @return profile
+     */
+    @NotNull
+    public static LaunchProfile fromVersionJson(String version, String branch, String module, @NotNull JsonObject versionJson) {
+        List<String> jvmArgs = new ArrayList<>();
+        for (JsonElement arg : versionJson.getAsJsonObject("jre").getAsJsonArray("extraArguments")) {
+            jvmArgs.add(arg.getAsString());
+        }
+        List<String> classpath = new ArrayList<>();
+        List<String> externalFiles = new ArrayList<>();
+        String nativesZip = "natives.zip"; // Not default value, just for init
+        JsonObject launchTypeData = versionJson.getAsJsonObject("launchTypeData");
+        for (JsonElement artifact : launchTypeData.getAsJsonArray("artifacts")) {
+            String name = artifact.getAsJsonObject().get("name").getAsString();
+            switch (artifact.getAsJsonObject().get("type").getAsString()) {
+                case "CLASS_PATH":
+                    classpath.add(name);
+                    break;
+                case "EXTERNAL_FILE":
+                    externalFiles.add(name);
+                    break;
+                case "NATIVES":
+                    nativesZip = name;
+                    break;
+            }
+        }
+        String mainClass = launchTypeData.has("mainClass") ? launchTypeData.get("mainClass").getAsString() : LunarClient.getMainClass();
+        boolean ichor = !launchTypeData.has("ichor") || launchTypeData.get("ichor").getAsBoolean();
+        return new LaunchProfile(version, branch, module, jvmArgs, classpath, externalFiles, nativesZip, mainClass, ichor, System.currentTimeMillis());
+    }
+
+    /**
+     * Load a saved profile
+     *
+     * @param file profile file
+     * @return profile, null if missing or broken
+     */
+    @Nullable
+    public static LaunchProfile load(@NotNull File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            return fromJson(JsonParser.parseReader(reader).getAsJsonObject());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Save the profile to the profiles dir
+     * Written to a temp file of its own first, so concurrent saves never mix and readers never see a partial file
+     */
+    public void save() throws IOException {
+        File file = fileOf(version, branch, module);
+        file.getParentFile().mkdirs();
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8)) {
+                new Gson().toJson(toJson(), writer);
+            }
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException ignored) {
+            // still usable from memory
+        }
+    }
+
+    @NotNull
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("version", version);
+        json.addProperty("branch", branch);
+        json.addProperty("module", module);
+        json.add("jvmArgs", toArray(jvmArgs));
+        json.add("classpath", toArray(classpath));
+        json.add("externalFiles", toArray(externalFiles));
+        json.addProperty("nativesZip", nativesZip);
+        json.addProperty("mainClass", mainClass);
+        json.addProperty("ichor", ichor);
+        json.addProperty("resolvedAt", resolvedAt);
+        return json;
+    }
+
+    @NotNull
+    public static LaunchProfile fromJson(@NotNull JsonObject json) {
+        return new LaunchProfile(
+                json.get("version").getAsString(),
+                json.get("branch").getAsString(),
+                json.get("module").getAsString(),
+                toList(json.getAsJsonArray("jvmArgs")),
+                toList(json.getAsJsonArray("classpath")),
+                toList(json.getAsJsonArray("externalFiles")),
+                json.get("nativesZip").getAsString(),
+                json.get("mainClass").getAsString(),
+                json.get("ichor").getAsBoolean(),
+                json.get("resolvedAt").getAsLong());
+    }
+
+    private static void refreshInBackground(String version, String branch, String module) {
+        String key = keyOf(version, branch, module);
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                resolve(version, branch, module);
+            } catch (IOException | RuntimeException ignored) {
+                // keep the saved profile
+            } finally {
+                refreshing.remove(key);
+            }
+        }, "LauncherLib-LaunchProfile");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @NotNull
+    private static String keyOf(String version, String branch, String module) {
+        return version + "-" + branch + "-" + module;
+    }
+
+    @NotNull
+    private static File fileOf(String version, String branch, String module) {
+        return new File(dir, keyOf(version, branch, module).replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+    }
+
+    @NotNull
+    private static JsonArray toArray(@NotNull List<String> list) {
+        JsonArray array = new JsonArray();
+        for (String s : list) {
+            array.add(s);
+        }
+        return array;
+    }
+
+    @NotNull
+    private static List<String> toList(@NotNull JsonArray array) {
+        List<String> list = new ArrayList<>();
+        for (JsonElement element : array) {
+            list.add(element.getAsString());
+        }
+        return list;
+    }
+}
@@ -1,7 +1,9 @@
 package org.cubewhy.launcher;
 
-import com.google.gson.JsonElement;
 import org.cubewhy.launcher.game.MinecraftArgs;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.process.GameProcess;
+import org.cubewhy.launcher.process.LineListener;
 import org.cubewhy.launcher.utils.ZipUtils;
 import org.cubewhy.lunarcn.JavaAgent;
 
@@ -9,7 +11,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
+import java.util.Collections;
+import java.util.List;
 
 public class LunarClient {
     /**
@@ -27,16 +30,24 @@ public class LunarClient {
      * @return jvm args
      */
     public static ArrayList<String> getDefaultJvmArgs(String version, String module, String branch, String baseDir) throws IOException {
+        return getDefaultJvmArgs(LaunchProfile.get(version, branch, module), baseDir);
+    }
+
+    /**
+     * Get default JVM args
+     *
+     * @param profile launch profile
+     * @param baseDir Game artifacts dir
+     * @return jvm args
+     */
+    public static ArrayList<String> getDefaultJvmArgs(LaunchProfile profile, String baseDir) {
         ArrayList<String> out = new ArrayList<>();
-        for (JsonElement arg : Objects.requireNonNull(LunarDownloader.getVersionJson(version, branch, module))
-                .getAsJsonObject()
-                .getAsJsonObject("jre")
-                .getAsJsonArray("extraArguments")) {
-            if (arg.getAsString().equals("-Djna.boot.library.path=natives")) {
+        for (String arg : profile.jvmArgs) {
+            if (arg.equals("-Djna.boot.library.path=natives")) {
                 out.add("-Djna.boot.library.path=" + baseDir + "/" + "natives");
                 continue;
             }
-            out.add(arg.getAsString());
+            out.add(arg);
         }
         out.add("-Djava.library.path=" + baseDir + "/" + "natives");
         return out;
@@ -72,98 +83,115 @@ public class LunarClient {
      * @param minecraftArgs Minecraft args
      * @param agents        JavaAgents
      * @param setupNatives  Unzip Natives
+     * @deprecated a command line string has to be split again, use getArgsList
      */
+    @Deprecated
     public static String getArgs(String version, String module, String branch, String baseDir, MinecraftArgs minecraftArgs, String java, String[] jvmArgs, String[] programArgs, JavaAgent[] agents, boolean setupNatives) throws IOException {
+        return getArgs(LaunchProfile.get(version, branch, module), baseDir, minecraftArgs, java, jvmArgs, programArgs, agents, setupNatives);
+    }
+
+    /**
+     * 拼接参数 (不请求API)
+     *
+     * @param profile       launch profile, see LaunchProfile.get
+     * @param baseDir       Game artifacts dir
+     * @param java          Java executable
+     * @param jvmArgs       JVM args
+     * @param programArgs   Game args
+     * @param minecraftArgs Minecraft args
+     * @param agents        JavaAgents
+     * @param setupNatives  Unzip Natives
+     * @return command line, arguments with spaces or quotes are quoted
+     * @deprecated a command line string has to be split again, use getArgsList
+     */
+    @Deprecated
+    public static String getArgs(LaunchProfile profile, String baseDir, MinecraftArgs minecraftArgs, String java, String[] jvmArgs, String[] programArgs, JavaAgent[] agents, boolean setupNatives) throws IOException {
+        List<String> args = getArgsList(profile, baseDir, minecraftArgs, java, jvmArgs, programArgs, agents, setupNatives);
+        StringBuilder sb = new StringBuilder();
+        for (String arg : args) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(quote(arg));
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String arg) {
+        boolean plain = !arg.isEmpty();
+        for (int i = 0; i < arg.length() && plain; i++) {
+            char c = arg.charAt(i);
+            plain = c != '"' && !Character.isWhitespace(c);
+        }
+        return plain ? arg : "\"" + arg.replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * 拼接参数, 每个参数是列表中的一项 (用于ProcessBuilder, 路径可以包含空格)
+     *
+     * @param profile       launch profile, see LaunchProfile.get
+     * @param baseDir       Game artifacts dir
+     * @param java          Java executable
+     * @param jvmArgs       JVM args
+     * @param programArgs   Game args
+     * @param minecraftArgs Minecraft args
+     * @param agents        JavaAgents
+     * @param setupNatives  Unzip Natives
+     * @return argument vector
+     */
+    public static List<String> getArgsList(LaunchProfile profile, String baseDir, MinecraftArgs minecraftArgs, String java, String[] jvmArgs, String[] programArgs, JavaAgent[] agents, boolean setupNatives) throws IOException {
+        String version = profile.version;
         ArrayList<String> args = new ArrayList<>();
         args.add(java); // Java可执行文件
-        ArrayList<String> jvmArgsList = new ArrayList<>(Arrays.asList(jvmArgs));
-        jvmArgsList.addAll(getDefaultJvmArgs(version, module, branch, baseDir));
-        args.add(String.join(" ", jvmArgsList)); // JVM参数
+        args.addAll(Arrays.asList(jvmArgs)); // JVM参数
+        args.addAll(getDefaultJvmArgs(profile, baseDir));
 
         // JavaAgents
         for (JavaAgent agent :
                 agents) {
-            args.add(agent.getJvmArgs()); // pre JavaAgent JVM args
+            args.add(agent.getJvmArg()); // pre JavaAgent JVM args
         }
         // ClassPaths
-        StringBuilder classpath = new StringBuilder("-cp ");
-        StringBuilder ichorPath = new StringBuilder("--ichorExternalFiles ");
-        StringBuilder lunarClasspath = new StringBuilder("--ichorClassPath ");
-        String nativesZip = "natives.zip"; // Not default value, just for init
-        for (JsonElement artifact :
-                Objects.requireNonNull(LunarDownloader.getVersionJson(version, branch, module))
-                        .getAsJsonObject()
-                        .getAsJsonObject("launchTypeData")
-                        .getAsJsonArray("artifacts")) {
-            if (artifact.getAsJsonObject().get("type").getAsString().equals("CLASS_PATH")) {
-                // is ClassPath
-                classpath.append(baseDir).append("/")
-                        .append(artifact.getAsJsonObject().get("name").getAsString())
-                        .append(";");
-                lunarClasspath.append(artifact.getAsJsonObject().get("name").getAsString())
-                        .append(",");
-            } else if (artifact.getAsJsonObject().get("type").getAsString().equals("EXTERNAL_FILE")) {
-                // is external file
-                ichorPath.append(artifact.getAsJsonObject().get("name").getAsString())
-                        .append(",");
-            } else if (artifact.getAsJsonObject().get("type").getAsString().equals("NATIVES")) {
-                // natives
-                nativesZip = artifact.getAsJsonObject().get("name").getAsString();
-            }
+        ArrayList<String> classpath = new ArrayList<>();
+        for (String name : profile.classpath) {
+            classpath.add(baseDir + "/" + name);
         }
-        args.add(classpath.toString()); // classPath
-        args.add(getMainClass(version)); // 主类
+        args.add("-cp");
+        args.add(String.join(File.pathSeparator, classpath)); // classPath
+        args.add(profile.mainClass); // 主类
 
         if (setupNatives) {
             // unzip Natives
-            unzipNatives(new File(baseDir, nativesZip), baseDir);
+            unzipNatives(new File(baseDir, profile.nativesZip), baseDir);
         }
 
         // Minecraft参数
-        boolean ichorEnabled = getIChorState(version, branch, module);
-
-        args.add("--version " + version); // what version will lunarClient inject
-        args.add("--accessToken 0");
-        args.add("--userProperties {}");
-        args.add("--launcherVersion 2.15.1");
-        args.add("--hwid PUBLIC-HWID");
-        args.add("--installationId INSTALL-ID");
-        args.add("--workingDirectory " + baseDir);
-        args.add("--classpathDir " + baseDir);
-        args.add("--width " + minecraftArgs.width);
-        args.add("--height " + minecraftArgs.height);
-        args.add("--gameDir " + minecraftArgs.gameDir);
-        args.add("--texturesDir " + minecraftArgs.texturesDir);
+        Collections.addAll(args, "--version", version); // what version will lunarClient inject
+        Collections.addAll(args, "--accessToken", "0");
+        Collections.addAll(args, "--userProperties", "{}");
+        Collections.addAll(args, "--launcherVersion", "2.15.1");
+        Collections.addAll(args, "--hwid", "PUBLIC-HWID");
+        Collections.addAll(args, "--installationId", "INSTALL-ID");
+        Collections.addAll(args, "--workingDirectory", baseDir);
+        Collections.addAll(args, "--classpathDir", baseDir);
+        Collections.addAll(args, "--width", String.valueOf(minecraftArgs.width));
+        Collections.addAll(args, "--height", String.valueOf(minecraftArgs.height));
+        Collections.addAll(args, "--gameDir", minecraftArgs.gameDir);
+        Collections.addAll(args, "--texturesDir", minecraftArgs.texturesDir);
         if (minecraftArgs.server != null) {
-            args.add("--server " + minecraftArgs.server); // Join server after launch
-        }
-        args.add("--assetIndex " + version.substring(0, version.lastIndexOf("."))); // 资源Index
-        if (ichorEnabled) {
-            args.add(lunarClasspath.toString());
-            args.add(ichorPath.toString());
+            Collections.addAll(args, "--server", minecraftArgs.server); // Join server after launch
         }
-        if (programArgs.length > 0) {
-            args.add(String.join("", programArgs));
+        Collections.addAll(args, "--assetIndex", version.substring(0, version.lastIndexOf("."))); // 资源Index
+        if (profile.ichor) {
+            Collections.addAll(args, "--ichorClassPath", String.join(",", profile.classpath));
+            Collections.addAll(args, "--ichorExternalFiles", String.join(",", profile.externalFiles));
         }
-        return String.join(" ", args);
+        args.addAll(Arrays.asList(programArgs));
+        return args;
     }
 
     /**
-     * Get ICHOR state
-     */
-    private static boolean getIChorState(String version, String branch, String module) throws IOException {
-        try {
-            return LunarDownloader.getVersionJson(version)
-                    .getAsJsonObject()
-                    .getAsJsonObject("launchTypeData")
-                    .get("ichor").getAsBoolean();
-        } catch (IOException e) {
-            return true;
-        }
-    }
-
-    /**
-     * Unzip natives
+     * Unzip natives, skipped if the zip didn't change since the last time
      *
      * @param nativesZip natives zip
      */
@@ -172,7 +200,7 @@ public class LunarClient {
         if (!dir.exists()) {
             dir.mkdirs();
         }
-        ZipUtils.unZip(nativesZip, dir);
+        ZipUtils.unZipIfChanged(nativesZip, dir);
     }
 
     /**
@@ -187,10 +215,39 @@ public class LunarClient {
      * @param programArgs   Game args
      * @param minecraftArgs Minecraft args
      * @param agents        JavaAgents
-     * @return Game process
+     * @return Game process, its output is drained in the background (not readable from the process)
+     * @deprecated the output is only available from a GameProcess, use startGame
      */
+    @Deprecated
     public static Process launch(String version, String module, String branch, String baseDir, MinecraftArgs minecraftArgs, String java, String[] jvmArgs, String[] programArgs, JavaAgent[] agents) throws IOException {
-        String args = getArgs(version, module, branch, baseDir, minecraftArgs, java, jvmArgs, programArgs, agents, true);
-        return Runtime.getRuntime().exec(args);
+        return startGame(version, module, branch, baseDir, minecraftArgs, java, jvmArgs, programArgs, agents, null, null).getProcess();
+    }
+
+    /**
+     * Launch the game and drain its output in the background
+     *
+     * @param version       Minecraft version
+     * @param module        LunarClient addon
+     * @param branch        LunarClient branch
+     * @param baseDir       游戏工件所在的目录
+     * @param java          Java executable
+     * @param jvmArgs       JVM args
+     * @param programArgs   Game args
+     * @param minecraftArgs Minecraft args
+     * @param agents        JavaAgents
+     * @param logFile       also write the output to this file, nullable
+     * @param listener      called for every line of output, nullable
+     * @return Game process
+     */
+    public static GameProcess startGame(String version, String module, String branch, String baseDir, MinecraftArgs minecraftArgs, String java, String[] jvmArgs, String[] programArgs, JavaAgent[] agents, File logFile, LineListener listener) throws IOException {
+        try (Metrics.Span span = Metrics.span(Metrics.PHASE_LAUNCH)) {
+            try {
+                List<String> args = getArgsList(LaunchProfile.get(version, branch, module), baseDir, minecraftArgs, java, jvmArgs, programArgs, agents, true);
+                return GameProcess.start(args, null, GameProcess.DEFAULT_BUFFER_LINES, logFile, listener);
+            } catch (IOException | RuntimeException e) {
+                span.fail();
+                throw e;
+            }
+        }
     }
 }
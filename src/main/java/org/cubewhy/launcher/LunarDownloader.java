@@ -2,14 +2,22 @@ package org.cubewhy.launcher;
 
 import com.google.gson.*;
 import okhttp3.Response;
-import org.cubewhy.launcher.utils.FileUtils;
+import org.cubewhy.launcher.cache.MetadataCache;
+import org.cubewhy.launcher.download.ArtifactStore;
+import org.cubewhy.launcher.download.DownloadEngine;
+import org.cubewhy.launcher.download.DownloadResult;
+import org.cubewhy.launcher.download.DownloadTask;
+import org.cubewhy.launcher.download.IntegrityManifest;
+import org.cubewhy.launcher.download.SyncStats;
+import org.cubewhy.launcher.download.TextureSync;
 import org.cubewhy.launcher.utils.HttpUtils;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -41,12 +49,7 @@ public class LunarDownloader {
         json.addProperty("branch", branch);
         json.addProperty("module", module);
         // 开始请求
-        try (Response response = HttpUtils.post(api, new Gson().toJson(json)).execute()) {
-            if (response.body() != null) {
-                return JsonParser.parseString(response.body().string());
-            }
-        }
-        return null;
+        return MetadataCache.getDefault().get(HttpUtils.post(api, new Gson().toJson(json)).request());
     }
 
     /**
@@ -77,12 +80,7 @@ public class LunarDownloader {
      */
 
     public static JsonElement getMetadata() throws IOException {
-        try (Response response = HttpUtils.get(metadataApi).execute()) {
-            if (response.body() != null) {
-                return JsonParser.parseString(response.body().string());
-            }
-        }
-        return null;
+        return MetadataCache.getDefault().get(HttpUtils.get(metadataApi).request());
     }
 
 
@@ -185,33 +183,68 @@ public class LunarDownloader {
      * @param downloadPath download path
      * @param artifacts    artifacts list
      * @param update       update LunarClient
+     * @return result of the download
      */
-    public static void downloadLunarArtifacts(File downloadPath, JsonObject artifacts, boolean update) {
+    public static DownloadResult downloadLunarArtifacts(File downloadPath, JsonObject artifacts, boolean update) {
+        return downloadLunarArtifacts(downloadPath, artifacts, update, new DownloadEngine().setStore(ArtifactStore.getDefault()));
+    }
+
+    /**
+     * Download artifacts of LunarClient with the given engine
+     *
+     * @param downloadPath download path
+     * @param artifacts    artifacts list
+     * @param update       update LunarClient
+     * @param engine       download engine
+     * @return result of the download
+     */
+    public static DownloadResult downloadLunarArtifacts(File downloadPath, JsonObject artifacts, boolean update, DownloadEngine engine) {
         if (!downloadPath.exists()) {
             downloadPath.mkdirs();
         }
+        IntegrityManifest manifest = IntegrityManifest.load(downloadPath);
+        if (update) {
+            List<File> files = new ArrayList<>();
+            for (String fileName : artifacts.keySet()) {
+                files.add(new File(downloadPath, fileName));
+            }
+            manifest.refresh(files); // hash the changed files in parallel
+        }
+        List<DownloadTask> tasks = new ArrayList<>();
         for (Map.Entry<String, JsonElement> keySet : artifacts.entrySet()) {
             String fileName = keySet.getKey();
             JsonObject info = keySet.getValue().getAsJsonObject();
             String url = info.get("url").getAsString();
+            String remoteSha1 = info.has("sha1") ? info.get("sha1").getAsString() : null;
             File file = new File(downloadPath, fileName);
-            if (file.exists() && update) {
-                String remoteSh1 = info.get("sh1").getAsString();
-                String sh1 = FileUtils.sha1(file);
-                if (remoteSh1.equals(sh1)) {
-                    continue; // no need update
-                }
-            }
-            try {
-                byte[] fileBytes = HttpUtils.download(url);
-                try (FileOutputStream stream = new FileOutputStream(downloadPath + "/" + fileName)) {
-                    if (fileBytes != null) {
-                        stream.write(fileBytes);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (file.exists() && update && remoteSha1 != null && manifest.verify(file, remoteSha1)) {
+                continue; // no need update
             }
+            tasks.add(new DownloadTask(url, file, remoteSha1, -1, getPriority(info)));
+        }
+        DownloadResult result = engine.download(tasks);
+        manifest.recordAll(tasks, result);
+        manifest.saveQuietly();
+        return result;
+    }
+
+    /**
+     * Files needed to start the game are downloaded first
+     *
+     * @param info artifact info, see getLunarArtifacts
+     * @return priority of the artifact
+     */
+    private static int getPriority(JsonObject info) {
+        JsonElement type = info.get("type");
+        if (type == null || type.isJsonNull()) {
+            return DownloadTask.PRIORITY_NORMAL;
+        }
+        switch (type.getAsString()) {
+            case "CLASS_PATH":
+            case "NATIVES":
+                return DownloadTask.PRIORITY_LAUNCH;
+            default:
+                return DownloadTask.PRIORITY_NORMAL;
         }
     }
 
@@ -221,9 +254,10 @@ public class LunarDownloader {
      * @param downloadPath Download path
      * @param artifacts    artifact list
      * @param update       Update LunarClient
+     * @return result of the download
      */
-    public static void downloadLunarArtifacts(String downloadPath, JsonObject artifacts, boolean update) {
-        downloadLunarArtifacts(new File(downloadPath), artifacts, update);
+    public static DownloadResult downloadLunarArtifacts(String downloadPath, JsonObject artifacts, boolean update) {
+        return downloadLunarArtifacts(new File(downloadPath), artifacts, update);
     }
 
     /**
@@ -241,18 +275,34 @@ public class LunarDownloader {
         String baseUrl = getLunarTexturesBaseUrl(version, branch, addon);
         try (Response response = HttpUtils.get(indexUrl).execute()) {
             if (response.body() != null) {
-                // parse
-                JsonObject jsonObject = new JsonObject();
-                for (String s : response.body().string().split("\n")) {
-                    // filename hashcode
-                    jsonObject.addProperty(baseUrl + s.split(" ")[0], s.split(" ")[1]);
-                }
-                return jsonObject;
+                return parseLunarTexturesIndex(baseUrl, response.body().charStream());
             }
         }
         return null;
     }
 
+    /**
+     * Parse the textures' index line by line
+     *
+     * @param baseUrl base url of textures
+     * @param reader  index, lines of "filename hashcode"
+     * @return url to hashcode
+     */
+    public static JsonObject parseLunarTexturesIndex(String baseUrl, Reader reader) throws IOException {
+        JsonObject jsonObject = new JsonObject();
+        BufferedReader lines = new BufferedReader(reader);
+        String s;
+        while ((s = lines.readLine()) != null) {
+            int space = s.indexOf(' ');
+            if (space < 0) {
+                continue; // empty line
+            }
+            // filename hashcode
+            jsonObject.addProperty(baseUrl + s.substring(0, space), s.substring(space + 1).trim());
+        }
+        return jsonObject;
+    }
+
     @NotNull
     @Contract(pure = true)
     public static String getLunarTexturesBaseUrl() {
@@ -270,8 +320,8 @@ public class LunarDownloader {
      * @param downloadPath Where save files
      * @param index        Textures index
      */
-    public static void downloadLunarTextures(File downloadPath, JsonElement index) {
-        downloadLunarTextures(downloadPath, index, true);
+    public static DownloadResult downloadLunarTextures(File downloadPath, JsonElement index) {
+        return downloadLunarTextures(downloadPath, index, true);
     }
 
     /**
@@ -280,30 +330,46 @@ public class LunarDownloader {
      * @param downloadPath Where save files
      * @param index        Textures index
      * @param update       update resources
+     * @return result of the download
      */
-    public static void downloadLunarTextures(File downloadPath, JsonElement index, boolean update) {
-        for (Map.Entry<String, JsonElement> keySet : index.getAsJsonObject().entrySet()) {
-            String[] urlFull = keySet.getKey().split("/");
-            String fileName = urlFull[urlFull.length - 1];
-            String url = keySet.getKey();
-            File file = new File(downloadPath, fileName);
-            if (file.exists() && update) {
-                String sh1 = keySet.getValue().getAsString();
-                if (sh1.equals(FileUtils.sha1(file))) {
-                    continue;
-                }
-            }
-            try {
-                byte[] fileBytes = HttpUtils.download(url);
-                try (FileOutputStream stream = new FileOutputStream(downloadPath + "/" + fileName)) {
-                    if (fileBytes != null) {
-                        stream.write(fileBytes);
-                    }
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    public static DownloadResult downloadLunarTextures(File downloadPath, JsonElement index, boolean update) {
+        return syncLunarTextures(downloadPath, index, update).result;
+    }
+
+    /**
+     * Download Textures of LunarClient with the given engine
+     *
+     * @param downloadPath Where save files
+     * @param index        Textures index
+     * @param update       update resources
+     * @param engine       download engine
+     * @return result of the download
+     */
+    public static DownloadResult downloadLunarTextures(File downloadPath, JsonElement index, boolean update, DownloadEngine engine) {
+        return new TextureSync(engine).sync(downloadPath, index, update).result;
+    }
+
+    /**
+     * Sync Textures of LunarClient
+     *
+     * @param downloadPath Where save files
+     * @param index        Textures index
+     * @return statistics of the sync
+     */
+    public static SyncStats syncLunarTextures(File downloadPath, JsonElement index) {
+        return syncLunarTextures(downloadPath, index, true);
+    }
+
+    /**
+     * Sync Textures of LunarClient
+     *
+     * @param downloadPath Where save files
+     * @param index        Textures index
+     * @param update       update resources
+     * @return statistics of the sync
+     */
+    public static SyncStats syncLunarTextures(File downloadPath, JsonElement index, boolean update) {
+        return new TextureSync().sync(downloadPath, index, update);
     }
 
     /**
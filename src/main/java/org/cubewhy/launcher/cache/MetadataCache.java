@@ -0,0 +1,274 @@
+package org.cubewhy.launcher.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.cubewhy.launcher.LunarDir;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.utils.HttpUtils;
+import org.cubewhy.launcher.utils.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of API responses (JSON)
+ * Fresh entries are served from memory, stale entries are revalidated with ETag/Last-Modified
+ * Concurrent lookups of the same request share one HTTP call
+ */
+public class MetadataCache {
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+    private static volatile MetadataCache defaultCache = new MetadataCache(new File(LunarDir.lunarDir, "cache/metadata"), DEFAULT_TTL);
+
+    public final File cacheDir;
+    private volatile long ttl;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Entry> flights = new SingleFlight<>();
+
+    /**
+     * Create a cache
+     *
+     * @param cacheDir where save the entries, null to keep them in memory only
+     * @param ttl      how long (ms) an entry is used without asking the server
+     */
+    public MetadataCache(@Nullable File cacheDir, long ttl) {
+        this.cacheDir = cacheDir;
+        this.ttl = ttl;
+    }
+
+    @NotNull
+    public static MetadataCache getDefault() {
+        return defaultCache;
+    }
+
+    public static void setDefault(@NotNull MetadataCache cache) {
+        defaultCache = cache;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Get the JSON response of a request
+     *
+     * @param request http request (GET or POST)
+     * @return parsed response
+     */
+    @NotNull
+    public JsonElement get(@NotNull Request request) throws IOException {
+        String key = keyOf(request);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = load(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        if (isFresh(entry)) {
+            Metrics.increment(Metrics.COUNTER_METADATA_HIT);
+            return entry.json.deepCopy();
+        }
+        return flights.execute(key, () -> refresh(key, request)).json.deepCopy();
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        entries.clear();
+        if (cacheDir != null) {
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private boolean isFresh(@Nullable Entry entry) {
+        return entry != null && System.currentTimeMillis() - entry.fetchedAt < ttl;
+    }
+
+    /**
+     * Fetch an entry again, only one thread (and one process, if the entries are saved to disk) does this at a time
+     */
+    @NotNull
+    private Entry refresh(@NotNull String key, @NotNull Request request) throws IOException {
+        if (cacheDir == null) {
+            return refreshLocked(key, request);
+        }
+        cacheDir.mkdirs();
+        File lockFile = new File(cacheDir, fileOf(key).getName() + ".lock");
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            return refreshLocked(key, request);
+        } catch (OverlappingFileLockException e) {
+            return refreshLocked(key, request);
+        }
+    }
+
+    @NotNull
+    private Entry refreshLocked(@NotNull String key, @NotNull Request request) throws IOException {
+        Entry entry = load(key); // another launcher may have refreshed it
+        if (entry == null) {
+            entry = entries.get(key);
+        }
+        if (isFresh(entry)) {
+            Metrics.increment(Metrics.COUNTER_METADATA_HIT);
+            entries.put(key, entry);
+            return entry;
+        }
+        Entry fresh;
+        try {
+            fresh = fetch(request, entry);
+        } catch (IOException e) {
+            if (entry != null) {
+                return entry; // stale but better than nothing
+            }
+            throw e;
+        }
+        entries.put(key, fresh);
+        save(key, fresh);
+        return fresh;
+    }
+
+    @NotNull
+    private Entry fetch(@NotNull Request request, @Nullable Entry cached) throws IOException {
+        Request.Builder builder = request.newBuilder();
+        if (cached != null) {
+            if (cached.etag != null) {
+                builder.header("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                builder.header("If-Modified-Since", cached.lastModified);
+            }
+        }
+        try (Metrics.Span span = Metrics.span(Metrics.PHASE_METADATA)) {
+            try (Response response = HttpUtils.request(builder.build()).execute()) {
+                long now = System.currentTimeMillis();
+                if (response.code() == 304 && cached != null) {
+                    Metrics.increment(Metrics.COUNTER_METADATA_REVALIDATED);
+                    return new Entry(cached.json, cached.etag, cached.lastModified, now);
+                }
+                ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    span.fail();
+                    throw new IOException("Failed to request " + request.url() + ": HTTP " + response.code());
+                }
+                Metrics.increment(Metrics.COUNTER_METADATA_MISS);
+                JsonElement json = JsonParser.parseReader(body.charStream());
+                return new Entry(json, response.header("ETag"), response.header("Last-Modified"), now);
+            } catch (IOException | RuntimeException e) {
+                span.fail();
+                throw e;
+            }
+        }
+    }
+
+    @Nullable
+    private Entry load(@NotNull String key) {
+        if (cacheDir == null) {
+            return null;
+        }
+        File file = fileOf(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+            if (!key.equals(json.get("key").getAsString())) {
+                return null;
+            }
+            return new Entry(json.get("body"),
+                    json.has("etag") ? json.get("etag").getAsString() : null,
+                    json.has("lastModified") ? json.get("lastModified").getAsString() : null,
+                    json.get("fetchedAt").getAsLong());
+        } catch (Exception e) {
+            return null; // broken entry, fetch again
+        }
+    }
+
+    private void save(@NotNull String key, @NotNull Entry entry) {
+        if (cacheDir == null) {
+            return;
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("key", key);
+        json.addProperty("etag", entry.etag);
+        json.addProperty("lastModified", entry.lastModified);
+        json.addProperty("fetchedAt", entry.fetchedAt);
+        json.add("body", entry.json);
+        File file = fileOf(key);
+        File temp = new File(cacheDir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            cacheDir.mkdirs();
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temp.toPath()), StandardCharsets.UTF_8)) {
+                new Gson().toJson(json, writer);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            temp.delete(); // the cache is optional
+        }
+    }
+
+    @NotNull
+    private File fileOf(@NotNull String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            return new File(cacheDir, StringUtils.toHex(hash) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NotNull
+    private static String keyOf(@NotNull Request request) throws IOException {
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.url());
+        RequestBody body = request.body();
+        if (body != null) {
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            key.append('\n').append(buffer.readUtf8());
+        }
+        return key.toString();
+    }
+
+    private static class Entry {
+        final JsonElement json;
+        final String etag;
+        final String lastModified;
+        final long fetchedAt;
+
+        Entry(JsonElement json, String etag, String lastModified, long fetchedAt) {
+            this.json = json;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
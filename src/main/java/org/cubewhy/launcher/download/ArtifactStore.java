@@ -0,0 +1,140 @@
+package org.cubewhy.launcher.download;
+
+import org.cubewhy.launcher.LunarDir;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Content-addressed file store, objects are saved as objects/[first 2 chars]/[sha1]
+ * Install dirs are filled from the store with hardlinks (or copies)
+ */
+public class ArtifactStore {
+    private static final ArtifactStore defaultStore = new ArtifactStore(new File(LunarDir.lunarDir, "objects"));
+
+    public final File root;
+    private final ConcurrentMap<String, CompletableFuture<Void>> fetching = new ConcurrentHashMap<>();
+
+    public ArtifactStore(@NotNull File root) {
+        this.root = root;
+    }
+
+    /**
+     * Get the shared store in the Lunar dir
+     *
+     * @return store
+     */
+    @NotNull
+    public static ArtifactStore getDefault() {
+        return defaultStore;
+    }
+
+    /**
+     * Get where the object saves
+     *
+     * @param sha1 sha1 of the object
+     * @return object file
+     */
+    @NotNull
+    public File getObject(@NotNull String sha1) {
+        String hash = sha1.toLowerCase(Locale.ROOT);
+        if (hash.length() != 40) {
+            throw new IllegalArgumentException("Bad sha1: " + sha1);
+        }
+        return new File(new File(root, hash.substring(0, 2)), hash);
+    }
+
+    /**
+     * Check is the object in the store
+     *
+     * @param sha1 sha1 of the object
+     */
+    public boolean has(@NotNull String sha1) {
+        return getObject(sha1).isFile();
+    }
+
+    /**
+     * Put an object in the store once, concurrent calls for the same object wait for the running fetch
+     * No lock is held while fetching, if the fetch fails the next waiting call tries itself
+     *
+     * @param sha1    sha1 of the object
+     * @param fetcher saves the object to the given file
+     * @return true if this call fetched the object, false if it was already there
+     */
+    boolean fetchIfAbsent(@NotNull String sha1, @NotNull Fetcher fetcher) throws IOException {
+        String hash = sha1.toLowerCase(Locale.ROOT);
+        while (!has(hash)) {
+            CompletableFuture<Void> own = new CompletableFuture<>();
+            CompletableFuture<Void> running = fetching.putIfAbsent(hash, own);
+            if (running == null) {
+                try {
+                    if (has(hash)) {
+                        return false; // another fetch finished between the check and the claim
+                    }
+                    fetcher.fetch(getObject(hash));
+                    return true;
+                } finally {
+                    fetching.remove(hash, own);
+                    own.complete(null);
+                }
+            }
+            try {
+                running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + hash);
+            } catch (ExecutionException ignored) {
+                // never completed exceptionally, the loop checks the store again
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Saves one object
+     */
+    interface Fetcher {
+        void fetch(@NotNull File object) throws IOException;
+    }
+
+    /**
+     * Place an object at the target path
+     * Use a hardlink if possible, else copy the object
+     *
+     * @param sha1   sha1 of the object
+     * @param target target file
+     */
+    public void materialize(@NotNull String sha1, @NotNull File target) throws IOException {
+        File object = getObject(sha1);
+        if (!object.isFile()) {
+            throw new IOException("Object " + sha1 + " is not in the store");
+        }
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(parent, target.getName() + ".link");
+        Files.deleteIfExists(temp.toPath());
+        try {
+            Files.createLink(temp.toPath(), object.toPath());
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // cross-device or the filesystem has no hardlinks
+            Files.copy(object.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
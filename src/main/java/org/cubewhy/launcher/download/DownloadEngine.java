@@ -0,0 +1,372 @@
+package org.cubewhy.launcher.download;
+
+import okhttp3.HttpUrl;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.utils.DownloadListener;
+import org.cubewhy.launcher.utils.HttpUtils;
+import org.cubewhy.launcher.utils.RetryPolicy;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Download files concurrently
+ */
+public class DownloadEngine {
+    private static final int BUDGET_UNIT = 1024; // permits are counted in KiB
+    private static final long UNKNOWN_LENGTH_BUDGET = 1024 * 1024;
+
+    public final int workers;
+    public final int perHostLimit;
+    public final long maxInFlightBytes;
+
+    private final Map<String, Semaphore> hostLimits = new ConcurrentHashMap<>();
+    private final TransferBudget inFlight;
+    private ArtifactStore store;
+    private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private RateLimiter rateLimiter = RateLimiter.getGlobal();
+    private MirrorRegistry mirrors = MirrorRegistry.getDefault();
+    private ProgressListener progressListener;
+    private long progressInterval = 500;
+
+    /**
+     * Create a download engine
+     *
+     * @param workers          count of download threads
+     * @param perHostLimit     max connections to one host
+     * @param maxInFlightBytes max bytes being transferred at the same time
+     */
+    public DownloadEngine(int workers, int perHostLimit, long maxInFlightBytes) {
+        if (workers < 1 || perHostLimit < 1 || maxInFlightBytes < BUDGET_UNIT) {
+            throw new IllegalArgumentException("Bad download engine config");
+        }
+        this.workers = workers;
+        this.perHostLimit = perHostLimit;
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.inFlight = new TransferBudget(toPermits(maxInFlightBytes));
+    }
+
+    public DownloadEngine() {
+        this(8, 6, 256L * 1024 * 1024);
+    }
+
+    /**
+     * Save verified files to a content-addressed store and link them to their targets
+     * Tasks without sha1 are always downloaded directly
+     *
+     * @param store shared store, null to disable
+     * @return this engine
+     */
+    public DownloadEngine setStore(ArtifactStore store) {
+        this.store = store;
+        return this;
+    }
+
+    public ArtifactStore getStore() {
+        return store;
+    }
+
+    /**
+     * Set how to retry failed downloads, partial files are resumed on retry
+     *
+     * @param retryPolicy retry policy
+     * @return this engine
+     */
+    public DownloadEngine setRetryPolicy(@NotNull RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Route downloads to the best mirror and fail over to the others, the default registry is used by default
+     * A failed mirror is left at once for the next one, only the last candidate is retried with the retry policy
+     *
+     * @param mirrors registry, null to always use the urls as they are
+     * @return this engine
+     */
+    public DownloadEngine setMirrors(MirrorRegistry mirrors) {
+        this.mirrors = mirrors;
+        return this;
+    }
+
+    public MirrorRegistry getMirrors() {
+        return mirrors;
+    }
+
+    /**
+     * Limit the bandwidth of this engine, the global limiter is used by default
+     *
+     * @param rateLimiter limiter, may be shared between engines
+     * @return this engine
+     */
+    public DownloadEngine setRateLimiter(@NotNull RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Receive file events and periodic progress updates of every batch
+     *
+     * @param progressListener listener, null to disable
+     * @return this engine
+     */
+    public DownloadEngine setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Set how often aggregate progress is sent
+     *
+     * @param millis interval in millis
+     * @return this engine
+     */
+    public DownloadEngine setProgressInterval(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("Bad progress interval");
+        }
+        this.progressInterval = millis;
+        return this;
+    }
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * Download all tasks and wait for them
+     * Tasks are started by priority (see DownloadTask.priority), in order within the same priority
+     * Batches running at the same time on this engine share its in-flight budget, higher priority transfers get it first
+     *
+     * @param tasks files to download
+     * @return result, contains the failed files
+     */
+    @NotNull
+    public DownloadResult download(@NotNull Collection<DownloadTask> tasks) {
+        Map<DownloadTask, Throwable> failures = new LinkedHashMap<>();
+        if (tasks.isEmpty()) {
+            return new DownloadResult(0, failures);
+        }
+        long start = System.nanoTime();
+        Batch batch = new Batch();
+        ProgressTracker progress = new ProgressTracker(tasks, progressListener);
+        progress.start(progressInterval);
+        Metrics.Span span = Metrics.span(Metrics.PHASE_DOWNLOAD);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, tasks.size()), new DownloadThreadFactory());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            List<DownloadTask> submitted = new ArrayList<>();
+            List<DownloadTask> ordered = new ArrayList<>(tasks);
+            ordered.sort(Comparator.comparingInt(task -> task.priority)); // stable
+            for (DownloadTask task : ordered) {
+                futures.add(executor.submit(() -> {
+                    ProgressTracker.FileProgress file = progress.begin(task);
+                    try {
+                        downloadOne(task, batch, file);
+                    } catch (Throwable e) {
+                        file.finish(e);
+                        throw e;
+                    }
+                    file.finish(null);
+                    return null;
+                }));
+                submitted.add(task);
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    failures.put(submitted.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.put(submitted.get(i), e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            progress.finish();
+        }
+        if (!failures.isEmpty()) {
+            span.fail();
+        }
+        span.close();
+        Metrics.count(Metrics.COUNTER_FILES_DOWNLOADED, batch.fetched.get());
+        Metrics.count(Metrics.COUNTER_BYTES_DOWNLOADED, batch.bytes.get());
+        Metrics.count(Metrics.COUNTER_FILES_FAILED, failures.size());
+        if (store != null) {
+            Metrics.count(Metrics.COUNTER_STORE_HIT, batch.linked.get());
+            Metrics.count(Metrics.COUNTER_STORE_MISS, batch.missed.get());
+        }
+        return new DownloadResult(tasks.size(), batch.fetched.get(), batch.linked.get(), batch.bytes.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures);
+    }
+
+    private void downloadOne(@NotNull DownloadTask task, @NotNull Batch batch, @NotNull ProgressTracker.FileProgress progress) throws IOException {
+        if (store == null || task.sha1 == null) {
+            batch.fetched(fetch(task, task.file, progress));
+            return;
+        }
+        boolean fetched = store.fetchIfAbsent(task.sha1, object -> {
+            batch.missed.incrementAndGet();
+            batch.fetched(fetch(task, object, progress));
+        });
+        store.materialize(task.sha1, task.file);
+        if (!fetched) {
+            batch.linked.incrementAndGet();
+        }
+    }
+
+    private long fetch(@NotNull DownloadTask task, File file, @NotNull ProgressTracker.FileProgress progress) throws IOException {
+        MirrorRegistry registry = mirrors;
+        if (registry == null) {
+            return fetch(task.url, null, null, task, file, retryPolicy, progress);
+        }
+        List<String> candidates = registry.resolve(task.url);
+        IOException last = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            String candidate = candidates.get(i);
+            boolean lastCandidate = i == candidates.size() - 1;
+            try {
+                return fetch(candidate, registry, registry.find(candidate), task, file, lastCandidate ? retryPolicy : RetryPolicy.NONE, progress);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (last != null) {
+                    e.addSuppressed(last);
+                }
+                last = e;
+            }
+        }
+        throw Objects.requireNonNull(last);
+    }
+
+    private long fetch(String url, MirrorRegistry registry, Mirror mirror, @NotNull DownloadTask task, File file, RetryPolicy policy,
+                       @NotNull ProgressTracker.FileProgress progress) throws IOException {
+        Semaphore hostLimit = hostLimits.computeIfAbsent(hostOf(url), host -> new Semaphore(perHostLimit, true));
+        acquire(hostLimit, 1);
+        long[] body = new long[3]; // of the last attempt: request sent (after the in-flight budget), first byte, bytes
+        try {
+            long size = HttpUtils.download(url, file, task.sha1, policy, new DownloadListener() {
+                private int permits = 0;
+
+                @Override
+                public void onRequest(long offset) throws IOException {
+                    // reserved before the request so that no response waits unread for the budget
+                    int wanted = toPermits(task.size < 0 ? UNKNOWN_LENGTH_BUDGET : task.size - offset);
+                    try {
+                        inFlight.acquire(wanted, task.priority); // launch files first, even without a rate limit
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Download interrupted");
+                    }
+                    permits = wanted;
+                    body[0] = System.nanoTime();
+                    body[1] = 0;
+                    body[2] = 0;
+                }
+
+                @Override
+                public void onStart(long offset, long contentLength) {
+                    body[1] = System.nanoTime();
+                    progress.onStart(offset, contentLength);
+                }
+
+                @Override
+                public void onBytes(int count) throws IOException {
+                    body[2] += count;
+                    progress.onBytes(count);
+                    rateLimiter.acquire(count, task.priority);
+                }
+
+                @Override
+                public void onEnd() {
+                    inFlight.release(permits);
+                    permits = 0;
+                }
+            });
+            if (registry != null) {
+                // a throttled transfer only measures our own limiter, keep its latency only
+                long bytes = rateLimiter.getRate() > 0 ? 0 : body[2];
+                registry.reportSuccess(mirror, body[1] == 0 ? -1 : body[1] - body[0], bytes, body[1] == 0 ? 0 : System.nanoTime() - body[1]);
+            }
+            return size;
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            if (registry != null) {
+                registry.reportFailure(mirror);
+            }
+            throw e;
+        } finally {
+            hostLimit.release();
+        }
+    }
+
+    private int toPermits(long bytes) {
+        long permits = Math.max(1, (bytes + BUDGET_UNIT - 1) / BUDGET_UNIT);
+        long max = maxInFlightBytes / BUDGET_UNIT;
+        return (int) Math.min(permits, Math.min(max, Integer.MAX_VALUE));
+    }
+
+    private static void acquire(@NotNull Semaphore semaphore, int permits) throws InterruptedIOException {
+        try {
+            semaphore.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        }
+    }
+
+    @NotNull
+    private static String hostOf(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl == null ? url : httpUrl.host() + ":" + httpUrl.port();
+    }
+
+    private static class Batch {
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger linked = new AtomicInteger();
+        final AtomicInteger missed = new AtomicInteger(); // not in the store when looked up
+        final AtomicLong bytes = new AtomicLong();
+
+        void fetched(long size) {
+            fetched.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+    }
+
+    private static class DownloadThreadFactory implements ThreadFactory {
+        private static final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable r) {
+            Thread thread = new Thread(r, "LauncherLib-Download-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
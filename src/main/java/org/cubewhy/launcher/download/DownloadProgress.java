@@ -0,0 +1,69 @@
+package org.cubewhy.launcher.download;
+
+/**
+ * Snapshot of a download batch
+ */
+public class DownloadProgress {
+    public final int filesTotal;
+    public final int filesDone;
+    public final int filesFailed;
+    public final long bytesDone;
+    public final long bytesTotal;
+    public final long bytesPerSecond;
+    public final long elapsedMillis;
+    public final boolean finished;
+
+    /**
+     * @param filesTotal     count of files in the batch
+     * @param filesDone      count of finished files, failures included
+     * @param filesFailed    count of failed files
+     * @param bytesDone      bytes transferred
+     * @param bytesTotal     expected bytes to transfer, estimated while some sizes are unknown
+     * @param bytesPerSecond current throughput
+     * @param elapsedMillis  time since the batch started
+     * @param finished       whether this is the last update of the batch
+     */
+    public DownloadProgress(int filesTotal, int filesDone, int filesFailed, long bytesDone, long bytesTotal, long bytesPerSecond, long elapsedMillis, boolean finished) {
+        this.filesTotal = filesTotal;
+        this.filesDone = filesDone;
+        this.filesFailed = filesFailed;
+        this.bytesDone = bytesDone;
+        this.bytesTotal = bytesTotal;
+        this.bytesPerSecond = bytesPerSecond;
+        this.elapsedMillis = elapsedMillis;
+        this.finished = finished;
+    }
+
+    /**
+     * Estimated time left
+     *
+     * @return millis, -1 if unknown (nothing transferred yet)
+     */
+    public long getEtaMillis() {
+        if (finished) {
+            return 0;
+        }
+        if (bytesPerSecond <= 0) {
+            return -1;
+        }
+        return Math.max(0, bytesTotal - bytesDone) * 1000 / bytesPerSecond;
+    }
+
+    /**
+     * @return done part of the batch, 0.0 to 1.0
+     */
+    public double getFraction() {
+        if (finished) {
+            return 1;
+        }
+        if (bytesTotal > 0) {
+            return Math.min(1, (double) bytesDone / bytesTotal);
+        }
+        return filesTotal == 0 ? 1 : (double) filesDone / filesTotal;
+    }
+
+    @Override
+    public String toString() {
+        return filesDone + "/" + filesTotal + " files, " + bytesDone + "/" + bytesTotal + " bytes, " + bytesPerSecond + " B/s";
+    }
+}
@@ -0,0 +1,105 @@
+package org.cubewhy.launcher.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class DownloadResult {
+    private final int total;
+    private final int fetched;
+    private final int linked;
+    private final long bytes;
+    private final long elapsedMillis;
+    private final Map<DownloadTask, Throwable> failures;
+
+    public DownloadResult(int total, int fetched, int linked, long bytes, long elapsedMillis, @NotNull Map<DownloadTask, Throwable> failures) {
+        this.total = total;
+        this.fetched = fetched;
+        this.linked = linked;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public DownloadResult(int total, @NotNull Map<DownloadTask, Throwable> failures) {
+        this(total, 0, 0, 0, 0, failures);
+    }
+
+    /**
+     * Get count of submitted tasks
+     *
+     * @return count
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Get count of files downloaded from the network
+     *
+     * @return count
+     */
+    public int getFetched() {
+        return fetched;
+    }
+
+    /**
+     * Get count of files placed from the artifact store without downloading
+     *
+     * @return count
+     */
+    public int getLinked() {
+        return linked;
+    }
+
+    /**
+     * Get bytes downloaded from the network
+     *
+     * @return bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get time spent (ms)
+     *
+     * @return time
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Get failed tasks and their errors
+     *
+     * @return failures
+     */
+    @NotNull
+    public Map<DownloadTask, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get failed tasks
+     *
+     * @return failed tasks
+     */
+    @NotNull
+    public List<DownloadTask> getFailedTasks() {
+        return Collections.unmodifiableList(new ArrayList<>(failures.keySet()));
+    }
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadResult{total=" + total + ", fetched=" + fetched + ", linked=" + linked
+                + ", failed=" + failures.size() + ", bytes=" + bytes + ", elapsed=" + elapsedMillis + "ms}";
+    }
+}
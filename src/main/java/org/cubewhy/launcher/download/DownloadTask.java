@@ -0,0 +1,61 @@
+package org.cubewhy.launcher.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+
+public class DownloadTask {
+    /**
+     * Files needed to start the game (CLASS_PATH, NATIVES, libraries)
+     */
+    public static final int PRIORITY_LAUNCH = 0;
+    /**
+     * Other files of the game (EXTERNAL_FILE), default
+     */
+    public static final int PRIORITY_NORMAL = 1;
+    /**
+     * Files not needed to start (textures, assets)
+     */
+    public static final int PRIORITY_BACKGROUND = 2;
+
+    public final String url;
+    public final File file;
+    public final String sha1;
+    public final long size;
+    public final int priority;
+
+    /**
+     * A file to download
+     *
+     * @param url      target url
+     * @param file     where save the file
+     * @param sha1     expected sha1 (nullable)
+     * @param size     expected size, -1 if unknown (only used for progress)
+     * @param priority PRIORITY_LAUNCH, PRIORITY_NORMAL or PRIORITY_BACKGROUND (lower first)
+     */
+    public DownloadTask(@NotNull String url, @NotNull File file, @Nullable String sha1, long size, int priority) {
+        this.url = url;
+        this.file = file;
+        this.sha1 = sha1;
+        this.size = size;
+        this.priority = Math.max(PRIORITY_LAUNCH, Math.min(PRIORITY_BACKGROUND, priority));
+    }
+
+    public DownloadTask(@NotNull String url, @NotNull File file, @Nullable String sha1, long size) {
+        this(url, file, sha1, size, PRIORITY_NORMAL);
+    }
+
+    public DownloadTask(@NotNull String url, @NotNull File file, @Nullable String sha1) {
+        this(url, file, sha1, -1);
+    }
+
+    public DownloadTask(@NotNull String url, @NotNull File file) {
+        this(url, file, null);
+    }
+
+    @Override
+    public String toString() {
+        return url + " -> " + file;
+    }
+}
@@ -0,0 +1,219 @@
+package org.cubewhy.launcher.download;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.utils.FileHasher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remember (size, mtime, sha1) of files in an install dir
+ * A file is only hashed again if its size or mtime changed
+ */
+public class IntegrityManifest {
+    public static final String FILE_NAME = ".integrity.json";
+
+    public final File dir;
+    private final ConcurrentMap<String, Record> records = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+
+    private IntegrityManifest(@NotNull File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Load the manifest of an install dir
+     * A missing or broken manifest is treated as empty
+     *
+     * @param dir install dir
+     * @return manifest
+     */
+    @NotNull
+    public static IntegrityManifest load(@NotNull File dir) {
+        IntegrityManifest manifest = new IntegrityManifest(dir);
+        File file = new File(dir, FILE_NAME);
+        if (!file.isFile()) {
+            return manifest;
+        }
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            JsonObject files = JsonParser.parseReader(reader).getAsJsonObject().getAsJsonObject("files");
+            for (Map.Entry<String, JsonElement> entry : files.entrySet()) {
+                JsonObject record = entry.getValue().getAsJsonObject();
+                manifest.records.put(entry.getKey(), new Record(
+                        record.get("size").getAsLong(),
+                        record.get("mtime").getAsLong(),
+                        record.get("sha1").getAsString()));
+            }
+        } catch (Exception e) {
+            manifest.records.clear();
+            manifest.dirty = true; // rewrite it
+        }
+        return manifest;
+    }
+
+    /**
+     * Get sha1 of a file, hash it only if it changed since the last time
+     *
+     * @param file file in the install dir
+     * @return sha1, null if the file can't be read
+     */
+    @Nullable
+    public String sha1(@NotNull File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        String key = keyOf(file);
+        Record record = records.get(key);
+        long size = file.length();
+        long mtime = file.lastModified();
+        if (record != null && record.size == size && record.mtime == mtime) {
+            Metrics.increment(Metrics.COUNTER_MANIFEST_HIT);
+            return record.sha1;
+        }
+        Metrics.increment(Metrics.COUNTER_MANIFEST_MISS);
+        dirty = true;
+        try {
+            String sha1 = FileHasher.sha1(file);
+            records.put(key, new Record(size, mtime, sha1));
+            return sha1;
+        } catch (IOException e) {
+            records.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Hash the changed files in parallel, so the next sha1/verify calls are answered from the manifest
+     *
+     * @param files files in the install dir
+     */
+    public void refresh(@NotNull Collection<File> files) {
+        List<File> changed = new ArrayList<>();
+        for (File file : files) {
+            Record record = records.get(keyOf(file));
+            if (file.isFile() && (record == null || record.size != file.length() || record.mtime != file.lastModified())) {
+                changed.add(file);
+            }
+        }
+        Metrics.count(Metrics.COUNTER_MANIFEST_MISS, changed.size());
+        FileHasher.BatchResult result = FileHasher.sha1All(changed);
+        for (Map.Entry<File, String> entry : result.getHashes().entrySet()) {
+            record(entry.getKey(), entry.getValue());
+        }
+        for (File file : result.getErrors().keySet()) {
+            records.remove(keyOf(file));
+        }
+    }
+
+    /**
+     * Check does the file match the sha1
+     *
+     * @param file file in the install dir
+     * @param sha1 expected sha1
+     */
+    public boolean verify(@NotNull File file, @NotNull String sha1) {
+        return sha1.equalsIgnoreCase(sha1(file));
+    }
+
+    /**
+     * Record a file which was just written and verified
+     *
+     * @param file file in the install dir
+     * @param sha1 sha1 of the file
+     */
+    public void record(@NotNull File file, @NotNull String sha1) {
+        if (file.isFile()) {
+            records.put(keyOf(file), new Record(file.length(), file.lastModified(), sha1));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Write the manifest if anything changed
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        JsonObject files = new JsonObject();
+        for (Map.Entry<String, Record> entry : records.entrySet()) {
+            JsonObject record = new JsonObject();
+            record.addProperty("size", entry.getValue().size);
+            record.addProperty("mtime", entry.getValue().mtime);
+            record.addProperty("sha1", entry.getValue().sha1);
+            files.add(entry.getKey(), record);
+        }
+        JsonObject json = new JsonObject();
+        json.add("files", files);
+        dir.mkdirs();
+        File file = new File(dir, FILE_NAME);
+        File temp = new File(dir, FILE_NAME + ".tmp");
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temp.toPath()), StandardCharsets.UTF_8)) {
+            new Gson().toJson(json, writer);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Write the manifest, ignore errors (the manifest is only a cache)
+     */
+    public void saveQuietly() {
+        try {
+            save();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Record the files of a finished download
+     *
+     * @param tasks  submitted tasks
+     * @param result result of the download
+     */
+    public void recordAll(@NotNull Iterable<DownloadTask> tasks, @NotNull DownloadResult result) {
+        for (DownloadTask task : tasks) {
+            if (task.sha1 != null && !result.getFailures().containsKey(task)) {
+                record(task.file, task.sha1);
+            }
+        }
+    }
+
+    @NotNull
+    private String keyOf(@NotNull File file) {
+        String base = dir.getAbsolutePath() + File.separator;
+        String path = file.getAbsolutePath();
+        return (path.startsWith(base) ? path.substring(base.length()) : path).replace(File.separatorChar, '/');
+    }
+
+    private static class Record {
+        final long size;
+        final long mtime;
+        final String sha1;
+
+        Record(long size, long mtime, String sha1) {
+            this.size = size;
+            this.mtime = mtime;
+            this.sha1 = sha1;
+        }
+    }
+}
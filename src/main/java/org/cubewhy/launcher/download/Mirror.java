@@ -0,0 +1,97 @@
+package org.cubewhy.launcher.download;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A host serving the files of a category under its base url, with live statistics
+ * Latency and throughput come from probes and from real downloads (moving averages)
+ */
+public class Mirror {
+    private static final double SMOOTHING = 0.3;
+    private static final double SCORE_BYTES = 1024 * 1024; // scores are the time to fetch 1 MiB
+
+    public final String category;
+    public final String baseUrl;
+
+    private double latencyMillis = -1;
+    private double bytesPerSecond = -1;
+    private int failures;
+    private long downUntil;
+
+    Mirror(@NotNull String category, @NotNull String baseUrl) {
+        this.category = category;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * @return average time to the first byte, -1 if unknown
+     */
+    public synchronized double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @return average throughput, -1 if unknown
+     */
+    public synchronized double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * A mirror is unhealthy for a while after too many failures in a row
+     *
+     * @return is healthy
+     */
+    public synchronized boolean isHealthy() {
+        return System.currentTimeMillis() >= downUntil;
+    }
+
+    /**
+     * @return whether any statistics were recorded
+     */
+    public synchronized boolean isMeasured() {
+        return latencyMillis >= 0 || bytesPerSecond >= 0;
+    }
+
+    /**
+     * Estimated time to fetch 1 MiB, lower is better
+     *
+     * @return score (ms), unknown parts are ignored
+     */
+    public synchronized double getScore() {
+        double score = Math.max(0, latencyMillis);
+        if (bytesPerSecond > 0) {
+            score += SCORE_BYTES * 1000 / bytesPerSecond;
+        }
+        return score;
+    }
+
+    synchronized void recordLatency(double millis) {
+        latencyMillis = latencyMillis < 0 ? millis : latencyMillis + SMOOTHING * (millis - latencyMillis);
+    }
+
+    synchronized void recordThroughput(long bytes, long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        double rate = bytes * 1e9 / nanos;
+        bytesPerSecond = bytesPerSecond < 0 ? rate : bytesPerSecond + SMOOTHING * (rate - bytesPerSecond);
+    }
+
+    synchronized void recordSuccess() {
+        failures = 0;
+        downUntil = 0;
+    }
+
+    synchronized void recordFailure(int threshold, long cooldownMillis) {
+        if (++failures >= threshold) {
+            failures = 0; // one more chance after the cooldown
+            downUntil = System.currentTimeMillis() + cooldownMillis;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl + " (" + category + ", " + (isHealthy() ? "healthy" : "down") + ", score " + Math.round(getScore()) + "ms)";
+    }
+}
@@ -0,0 +1,366 @@
+package org.cubewhy.launcher.download;
+
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.cubewhy.launcher.LunarDownloader;
+import org.cubewhy.launcher.game.AssetSync;
+import org.cubewhy.launcher.utils.HttpStatusException;
+import org.cubewhy.launcher.utils.HttpUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mirrors of the download hosts, each url is routed to the fastest healthy mirror of its category
+ * The default registry only knows the official hosts, add mirrors with addMirror
+ */
+public class MirrorRegistry {
+    public static final String ARTIFACTS = "artifacts";
+    public static final String TEXTURES = "textures";
+    public static final String MOJANG_META = "mojang.meta";
+    public static final String MOJANG_LIBRARIES = "mojang.libraries";
+    public static final String MOJANG_ASSETS = "mojang.assets";
+
+    private static final int PROBE_BYTES = 256 * 1024;
+    private static final long MIN_THROUGHPUT_SAMPLE = 64 * 1024; // smaller transfers only measure latency
+    // healthy first, then measured first, then by score (stable, so add order breaks ties)
+    private static final Comparator<Mirror> RANKING = (a, b) -> {
+        int health = Boolean.compare(b.isHealthy(), a.isHealthy());
+        if (health != 0) {
+            return health;
+        }
+        int measured = Boolean.compare(b.isMeasured(), a.isMeasured());
+        if (measured != 0) {
+            return measured;
+        }
+        return Double.compare(a.getScore(), b.getScore());
+    };
+    private static volatile MirrorRegistry defaultRegistry = withOfficialHosts();
+
+    private final Map<String, List<Mirror>> mirrors = new ConcurrentHashMap<>();
+    private final Map<String, String> probePaths = new ConcurrentHashMap<>();
+    private volatile int failureThreshold = 3;
+    private volatile long cooldownMillis = TimeUnit.SECONDS.toMillis(60);
+
+    public interface Fetcher<T> {
+        T fetch(String url) throws IOException;
+    }
+
+    public interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    /**
+     * Create a registry with the official hosts of LunarClient and Mojang
+     *
+     * @return registry
+     */
+    @NotNull
+    public static MirrorRegistry withOfficialHosts() {
+        MirrorRegistry registry = new MirrorRegistry();
+        registry.addMirror(ARTIFACTS, "https://launcheruploads.lunarclientcdn.com/");
+        registry.addMirror(TEXTURES, LunarDownloader.getLunarTexturesBaseUrl());
+        registry.addMirror(MOJANG_META, "https://piston-meta.mojang.com/");
+        registry.addMirror(MOJANG_META, "https://launchermeta.mojang.com/");
+        registry.addMirror(MOJANG_LIBRARIES, "https://libraries.minecraft.net/");
+        registry.addMirror(MOJANG_ASSETS, AssetSync.resourcesUrl);
+        registry.setProbePath(MOJANG_META, "mc/game/version_manifest_v2.json");
+        return registry;
+    }
+
+    @NotNull
+    public static MirrorRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    public static void setDefault(@NotNull MirrorRegistry registry) {
+        defaultRegistry = registry;
+    }
+
+    /**
+     * Add a mirror, it serves the same paths as the other mirrors of the category
+     *
+     * @param category category, e.g. MOJANG_ASSETS
+     * @param baseUrl  base url
+     * @return the mirror
+     */
+    @NotNull
+    public Mirror addMirror(@NotNull String category, @NotNull String baseUrl) {
+        String base = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        List<Mirror> list = mirrors.computeIfAbsent(category, key -> new CopyOnWriteArrayList<>());
+        synchronized (list) {
+            for (Mirror mirror : list) {
+                if (mirror.baseUrl.equals(base)) {
+                    return mirror;
+                }
+            }
+            Mirror mirror = new Mirror(category, base);
+            list.add(mirror);
+            return mirror;
+        }
+    }
+
+    public void removeMirror(@NotNull String category, @NotNull String baseUrl) {
+        String base = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        List<Mirror> list = mirrors.get(category);
+        if (list != null) {
+            list.removeIf(mirror -> mirror.baseUrl.equals(base));
+        }
+    }
+
+    /**
+     * Get the mirrors of a category, in the order they were added
+     *
+     * @param category category
+     * @return mirrors
+     */
+    @NotNull
+    public List<Mirror> getMirrors(@NotNull String category) {
+        List<Mirror> list = mirrors.get(category);
+        return list == null ? Collections.emptyList() : new ArrayList<>(list);
+    }
+
+    /**
+     * Set the path requested when probing a category
+     *
+     * @param category category
+     * @param path     path relative to the base url
+     */
+    public void setProbePath(@NotNull String category, @NotNull String path) {
+        probePaths.put(category, path);
+    }
+
+    /**
+     * Set when a mirror is skipped
+     *
+     * @param failureThreshold failures in a row before a mirror is skipped
+     * @param cooldownMillis   how long it is skipped
+     */
+    public void setFailurePolicy(int failureThreshold, long cooldownMillis) {
+        if (failureThreshold < 1 || cooldownMillis < 0) {
+            throw new IllegalArgumentException("Bad failure policy");
+        }
+        this.failureThreshold = failureThreshold;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * Find the mirror serving an url
+     *
+     * @param url url
+     * @return mirror, null if the url is not on a known host
+     */
+    @Nullable
+    public Mirror find(@NotNull String url) {
+        Mirror best = null;
+        for (List<Mirror> list : mirrors.values()) {
+            for (Mirror mirror : list) {
+                if (url.startsWith(mirror.baseUrl) && (best == null || mirror.baseUrl.length() > best.baseUrl.length())) {
+                    best = mirror;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the urls to try for a file, best first
+     * Healthy measured mirrors come first by score, then the unmeasured ones, then the unhealthy ones
+     *
+     * @param url url of the file on any mirror
+     * @return candidates, just the url if it is not on a known host
+     */
+    @NotNull
+    public List<String> resolve(@NotNull String url) {
+        Mirror origin = find(url);
+        if (origin == null) {
+            return Collections.singletonList(url);
+        }
+        String path = url.substring(origin.baseUrl.length());
+        List<Mirror> ranked = getMirrors(origin.category);
+        ranked.sort(RANKING);
+        List<String> out = new ArrayList<>(ranked.size());
+        for (Mirror mirror : ranked) {
+            out.add(mirror.baseUrl + path);
+        }
+        return out;
+    }
+
+    /**
+     * Fetch from the best mirror, fail over to the next ones
+     * Only the health of the mirrors is recorded, the fetcher may do anything, use get to also measure the latency
+     *
+     * @param url     url of the resource on any mirror
+     * @param fetcher called with each candidate url until one succeeds
+     * @return result of the fetcher
+     */
+    public <T> T execute(@NotNull String url, @NotNull Fetcher<T> fetcher) throws IOException {
+        IOException last = null;
+        for (String candidate : resolve(url)) {
+            Mirror mirror = find(candidate);
+            try {
+                T result = fetcher.fetch(candidate);
+                if (mirror != null) {
+                    mirror.recordSuccess();
+                }
+                return result;
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                reportFailure(mirror);
+                if (last != null) {
+                    e.addSuppressed(last);
+                }
+                last = e;
+            }
+        }
+        throw Objects.requireNonNull(last);
+    }
+
+    /**
+     * GET from the best mirror, fail over to the next ones
+     * The time to the response headers is recorded as the latency of the mirror (not for cached responses)
+     *
+     * @param url     url of the resource on any mirror
+     * @param handler called with the response of each candidate until one succeeds, the response is closed after it
+     * @return result of the handler
+     */
+    public <T> T get(@NotNull String url, @NotNull ResponseHandler<T> handler) throws IOException {
+        return execute(url, candidate -> {
+            try (Response response = HttpUtils.get(candidate).execute()) {
+                Mirror mirror = find(candidate);
+                if (mirror != null && response.networkResponse() != null) {
+                    mirror.recordLatency(response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+                }
+                return handler.handle(response);
+            }
+        });
+    }
+
+    /**
+     * Record a finished transfer
+     *
+     * @param mirror       mirror, nullable
+     * @param latencyNanos time to the first byte
+     * @param bytes        bytes transferred
+     * @param bodyNanos    time to transfer the body
+     */
+    public void reportSuccess(@Nullable Mirror mirror, long latencyNanos, long bytes, long bodyNanos) {
+        if (mirror == null) {
+            return;
+        }
+        if (latencyNanos >= 0) {
+            mirror.recordLatency(latencyNanos / 1e6);
+        }
+        if (bytes >= MIN_THROUGHPUT_SAMPLE) {
+            mirror.recordThroughput(bytes, bodyNanos);
+        }
+        mirror.recordSuccess();
+    }
+
+    public void reportFailure(@Nullable Mirror mirror) {
+        if (mirror != null) {
+            mirror.recordFailure(failureThreshold, cooldownMillis);
+        }
+    }
+
+    /**
+     * Measure latency and throughput of every mirror of a category, in parallel
+     *
+     * @param category category
+     */
+    public void probe(@NotNull String category) {
+        probe(getMirrors(category));
+    }
+
+    /**
+     * Measure every mirror, in parallel
+     */
+    public void probeAll() {
+        List<Mirror> all = new ArrayList<>();
+        for (String category : mirrors.keySet()) {
+            all.addAll(getMirrors(category));
+        }
+        probe(all);
+    }
+
+    private void probe(@NotNull List<Mirror> targets) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(targets.size(), 16), r -> {
+            Thread thread = new Thread(r, "LauncherLib-Probe-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Mirror mirror : targets) {
+                futures.add(executor.submit(() -> probe(mirror)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignored) {
+                    // recorded as a failure of the mirror
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Fetch the first bytes of the probe path of a mirror
+     *
+     * @param mirror mirror
+     * @return true if the mirror answered
+     */
+    public boolean probe(@NotNull Mirror mirror) {
+        String url = mirror.baseUrl + probePaths.getOrDefault(mirror.category, "");
+        Request request = new Request.Builder().url(url)
+                .header("Range", "bytes=0-" + (PROBE_BYTES - 1))
+                .cacheControl(CacheControl.FORCE_NETWORK)
+                .build();
+        long start = System.nanoTime();
+        try (Response response = HttpUtils.request(request).execute()) {
+            long firstByte = System.nanoTime();
+            ResponseBody body = response.body();
+            // any answer of the server measures the latency, only a body measures the throughput
+            if (response.code() >= 500 || body == null) {
+                throw new HttpStatusException(url, response.code());
+            }
+            long bytes = 0;
+            if (response.isSuccessful()) {
+                try (InputStream in = body.byteStream()) {
+                    byte[] buffer = new byte[16 * 1024];
+                    int len;
+                    while (bytes < PROBE_BYTES && (len = in.read(buffer)) != -1) {
+                        bytes += len;
+                    }
+                }
+            }
+            reportSuccess(mirror, firstByte - start, bytes, System.nanoTime() - firstByte);
+            return true;
+        } catch (IOException e) {
+            mirror.recordFailure(1, cooldownMillis); // a failed probe takes the mirror down at once
+            return false;
+        }
+    }
+}
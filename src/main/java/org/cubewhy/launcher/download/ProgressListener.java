@@ -0,0 +1,36 @@
+package org.cubewhy.launcher.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Progress of a DownloadEngine batch
+ * File events are called on the download threads, progress updates on the progress thread
+ * Implementations should return quickly
+ */
+public interface ProgressListener {
+    /**
+     * A file is about to be downloaded (or linked from the store)
+     *
+     * @param task the file
+     */
+    default void onFileStart(@NotNull DownloadTask task) {
+    }
+
+    /**
+     * A file finished
+     *
+     * @param task  the file
+     * @param error the failure, null if the file is ready
+     */
+    default void onFileFinish(@NotNull DownloadTask task, @Nullable Throwable error) {
+    }
+
+    /**
+     * Periodic aggregate update, also called once when the batch ends
+     *
+     * @param progress snapshot
+     */
+    default void onProgress(@NotNull DownloadProgress progress) {
+    }
+}
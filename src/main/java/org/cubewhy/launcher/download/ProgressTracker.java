@@ -0,0 +1,190 @@
+package org.cubewhy.launcher.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the progress of one batch, the hot path (bytes) only touches a LongAdder
+ * Aggregate updates are sent from a separate thread so slow listeners never slow down the transfer
+ */
+class ProgressTracker {
+    private static final double SMOOTHING = 0.3;
+
+    private final ProgressListener listener;
+    private final int filesTotal;
+    private final long start = System.nanoTime();
+    private final LongAdder bytesDone = new LongAdder();
+    private final AtomicLong knownBytes = new AtomicLong(); // expected bytes of the sized files
+    private final AtomicInteger knownFiles = new AtomicInteger();
+    private final AtomicInteger unknownFiles = new AtomicInteger(); // size not known yet
+    private final AtomicInteger filesDone = new AtomicInteger();
+    private final AtomicInteger filesFailed = new AtomicInteger();
+    private ScheduledExecutorService ticker;
+
+    // only touched by the ticker
+    private long lastBytes;
+    private long lastNanos = start;
+    private double rate;
+
+    ProgressTracker(@NotNull Collection<DownloadTask> tasks, @Nullable ProgressListener listener) {
+        this.listener = listener;
+        this.filesTotal = tasks.size();
+        for (DownloadTask task : tasks) {
+            if (task.size >= 0) {
+                knownBytes.addAndGet(task.size);
+                knownFiles.incrementAndGet();
+            } else {
+                unknownFiles.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Send aggregate updates periodically
+     *
+     * @param intervalMillis update interval
+     */
+    void start(long intervalMillis) {
+        if (listener == null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "LauncherLib-Progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the updates and send the last one
+     */
+    void finish() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            try {
+                ticker.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (listener != null) {
+            long elapsed = System.nanoTime() - start;
+            long average = elapsed <= 0 ? 0 : (long) (bytesDone.sum() * 1e9 / elapsed);
+            publish(snapshot(average, true));
+        }
+    }
+
+    @NotNull
+    FileProgress begin(@NotNull DownloadTask task) {
+        if (listener != null) {
+            try {
+                listener.onFileStart(task);
+            } catch (RuntimeException ignored) {
+                // progress must never break the download
+            }
+        }
+        return new FileProgress(task);
+    }
+
+    private synchronized void tick() {
+        long now = System.nanoTime();
+        long bytes = bytesDone.sum();
+        if (now > lastNanos) {
+            double instant = (bytes - lastBytes) * 1e9 / (now - lastNanos);
+            rate = lastBytes == 0 && rate == 0 ? instant : rate + SMOOTHING * (instant - rate);
+        }
+        lastBytes = bytes;
+        lastNanos = now;
+        publish(snapshot((long) rate, false));
+    }
+
+    @NotNull
+    private DownloadProgress snapshot(long bytesPerSecond, boolean finished) {
+        long known = knownBytes.get();
+        int sized = knownFiles.get();
+        // files of unknown size are estimated as the average of the known ones
+        long total = known + (sized == 0 ? 0 : unknownFiles.get() * (known / sized));
+        long done = bytesDone.sum();
+        return new DownloadProgress(filesTotal, filesDone.get(), filesFailed.get(), done, Math.max(total, done),
+                bytesPerSecond, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), finished);
+    }
+
+    private void publish(@NotNull DownloadProgress progress) {
+        try {
+            listener.onProgress(progress);
+        } catch (RuntimeException ignored) {
+            // progress must never break the download
+        }
+    }
+
+    /**
+     * Progress of one file, not thread-safe (one download thread per file)
+     */
+    class FileProgress {
+        private final DownloadTask task;
+        private long expected;
+        private long transferred;
+
+        private FileProgress(@NotNull DownloadTask task) {
+            this.task = task;
+            this.expected = task.size;
+        }
+
+        /**
+         * An attempt started
+         *
+         * @param offset        bytes kept from earlier attempts, 0 if it starts from scratch
+         * @param contentLength bytes of this attempt, -1 if unknown
+         */
+        void onStart(long offset, long contentLength) {
+            if (transferred > offset) {
+                bytesDone.add(offset - transferred); // the bytes of the dropped attempts are sent again
+                transferred = offset;
+            }
+            if (expected < 0 && contentLength >= 0) {
+                expected = transferred + contentLength;
+                knownBytes.addAndGet(expected);
+                knownFiles.incrementAndGet();
+                unknownFiles.decrementAndGet();
+            }
+        }
+
+        void onBytes(int count) {
+            transferred += count;
+            bytesDone.add(count);
+        }
+
+        void finish(@Nullable Throwable error) {
+            if (expected >= 0) {
+                // the real size replaces the expected one (0 if linked from the store)
+                knownBytes.addAndGet((error == null ? transferred : Math.max(transferred, expected)) - expected);
+            } else {
+                unknownFiles.decrementAndGet();
+                if (transferred > 0) {
+                    knownBytes.addAndGet(transferred);
+                    knownFiles.incrementAndGet();
+                }
+            }
+            filesDone.incrementAndGet();
+            if (error != null) {
+                filesFailed.incrementAndGet();
+            }
+            if (listener != null) {
+                try {
+                    listener.onFileFinish(task, error);
+                } catch (RuntimeException ignored) {
+                    // progress must never break the download
+                }
+            }
+        }
+    }
+}
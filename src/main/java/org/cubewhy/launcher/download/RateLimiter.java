@@ -0,0 +1,110 @@
+package org.cubewhy.launcher.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Token bucket bandwidth limiter, shared by every engine using it
+ * While higher priority transfers are waiting for tokens, lower priority ones are held back
+ * Without a rate, priority is only applied by the in-flight budget of each engine (see TransferBudget)
+ */
+public class RateLimiter {
+    private static final RateLimiter global = new RateLimiter(0);
+
+    private volatile long bytesPerSecond;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private final int[] waiting = new int[DownloadTask.PRIORITY_BACKGROUND + 1];
+
+    /**
+     * Create a limiter
+     *
+     * @param bytesPerSecond max rate, 0 for unlimited
+     */
+    public RateLimiter(long bytesPerSecond) {
+        setRate(bytesPerSecond);
+    }
+
+    /**
+     * Limiter used by engines by default, unlimited until setRate is called
+     *
+     * @return global limiter
+     */
+    @NotNull
+    public static RateLimiter getGlobal() {
+        return global;
+    }
+
+    /**
+     * Change the rate, transfers already running follow the new rate
+     *
+     * @param bytesPerSecond max rate, 0 for unlimited
+     */
+    public synchronized void setRate(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bad rate " + bytesPerSecond);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = Math.min(tokens, bytesPerSecond);
+        notifyAll();
+    }
+
+    public long getRate() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Take tokens for bytes just transferred, waits until the bucket can pay for them
+     * The bucket may go into debt by one chunk, the next caller waits for it
+     *
+     * @param bytes    count of bytes
+     * @param priority priority of the transfer, see DownloadTask
+     */
+    public void acquire(int bytes, int priority) throws InterruptedIOException {
+        if (bytesPerSecond == 0) {
+            return; // unlimited
+        }
+        int level = Math.max(0, Math.min(waiting.length - 1, priority));
+        synchronized (this) {
+            waiting[level]++;
+            try {
+                while (true) {
+                    long rate = bytesPerSecond;
+                    if (rate == 0) {
+                        return;
+                    }
+                    refill(rate);
+                    if (tokens > 0 && !higherWaiting(level)) {
+                        tokens -= bytes;
+                        return;
+                    }
+                    long waitMillis = Math.max(1, (long) Math.ceil(-tokens * 1000 / rate));
+                    wait(Math.min(waitMillis, 100));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download interrupted");
+            } finally {
+                waiting[level]--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void refill(long rate) {
+        long now = System.nanoTime();
+        // allow bursts of up to one second
+        tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1e9);
+        lastRefill = now;
+    }
+
+    private boolean higherWaiting(int level) {
+        for (int i = 0; i < level; i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
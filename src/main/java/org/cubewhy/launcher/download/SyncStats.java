@@ -0,0 +1,43 @@
+package org.cubewhy.launcher.download;
+
+import org.jetbrains.annotations.NotNull;
+
+public class SyncStats {
+    public final int files;
+    public final int skipped;
+    public final int fetched;
+    public final int linked;
+    public final int failed;
+    public final long bytes;
+    public final long elapsedMillis;
+    public final DownloadResult result;
+
+    /**
+     * Statistics of a sync
+     *
+     * @param files         count of files in the index
+     * @param skipped       count of files already verified on disk
+     * @param elapsedMillis time spent on the whole sync (ms)
+     * @param result        result of the download step
+     */
+    public SyncStats(int files, int skipped, long elapsedMillis, @NotNull DownloadResult result) {
+        this.files = files;
+        this.skipped = skipped;
+        this.fetched = result.getFetched();
+        this.linked = result.getLinked();
+        this.failed = result.getFailures().size();
+        this.bytes = result.getBytes();
+        this.elapsedMillis = elapsedMillis;
+        this.result = result;
+    }
+
+    public boolean isSuccess() {
+        return failed == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncStats{files=" + files + ", skipped=" + skipped + ", fetched=" + fetched + ", linked=" + linked
+                + ", failed=" + failed + ", bytes=" + bytes + ", elapsed=" + elapsedMillis + "ms}";
+    }
+}
@@ -0,0 +1,64 @@
+package org.cubewhy.launcher.download;
+
+import com.google.gson.JsonElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sync the textures of LunarClient
+ * Textures are many small files on one CDN host, the default engine runs lots of requests to that host at once;
+ * OkHttp multiplexes them over one HTTP/2 connection when the CDN supports it
+ */
+public class TextureSync {
+    private final DownloadEngine engine;
+
+    public TextureSync(@NotNull DownloadEngine engine) {
+        this.engine = engine;
+    }
+
+    public TextureSync() {
+        this(new DownloadEngine(32, 32, 64L * 1024 * 1024).setStore(ArtifactStore.getDefault()));
+    }
+
+    /**
+     * Download textures which are missing or broken
+     *
+     * @param downloadPath where save the textures
+     * @param index        textures index, see LunarDownloader.getLunarTexturesIndex
+     * @param update       verify existing files and skip the good ones
+     * @return statistics
+     */
+    @NotNull
+    public SyncStats sync(@NotNull File downloadPath, @NotNull JsonElement index, boolean update) {
+        long start = System.nanoTime();
+        IntegrityManifest manifest = IntegrityManifest.load(downloadPath);
+        Map<File, String> expected = new LinkedHashMap<>();
+        Map<File, String> urls = new HashMap<>();
+        for (Map.Entry<String, JsonElement> keySet : index.getAsJsonObject().entrySet()) {
+            String url = keySet.getKey();
+            File file = new File(downloadPath, url.substring(url.lastIndexOf('/') + 1));
+            expected.put(file, keySet.getValue().getAsString());
+            urls.put(file, url);
+        }
+        if (update) {
+            manifest.refresh(expected.keySet()); // hash the changed files in parallel
+        }
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (Map.Entry<File, String> entry : expected.entrySet()) {
+            File file = entry.getKey();
+            String sh1 = entry.getValue();
+            if (file.exists() && update && manifest.verify(file, sh1)) {
+                continue;
+            }
+            tasks.add(new DownloadTask(urls.get(file), file, sh1, -1, DownloadTask.PRIORITY_BACKGROUND));
+        }
+        int files = expected.size();
+        DownloadResult result = engine.download(tasks);
+        manifest.recordAll(tasks, result);
+        manifest.saveQuietly();
+        return new SyncStats(files, files - tasks.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result);
+    }
+}
@@ -0,0 +1,72 @@
+package org.cubewhy.launcher.download;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Permits for bytes in flight, handed out by priority (then in order)
+ * Works without a rate limit: while a higher priority transfer waits, lower priority ones don't start
+ */
+public class TransferBudget {
+    private final Deque<Object>[] queues;
+    private long available;
+
+    /**
+     * Create a budget
+     *
+     * @param permits count of permits
+     */
+    @SuppressWarnings("unchecked")
+    public TransferBudget(long permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("Bad budget " + permits);
+        }
+        this.available = permits;
+        this.queues = new Deque[DownloadTask.PRIORITY_BACKGROUND + 1];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Wait for permits
+     *
+     * @param permits  count of permits, at most the size of the budget
+     * @param priority priority of the transfer, see DownloadTask
+     */
+    public synchronized void acquire(long permits, int priority) throws InterruptedException {
+        Deque<Object> queue = queues[Math.max(0, Math.min(queues.length - 1, priority))];
+        Object ticket = new Object();
+        queue.addLast(ticket);
+        try {
+            while (queue.peekFirst() != ticket || higherWaiting(queue) || available < permits) {
+                wait();
+            }
+            available -= permits;
+        } finally {
+            queue.remove(ticket);
+            notifyAll();
+        }
+    }
+
+    public synchronized void release(long permits) {
+        available += permits;
+        notifyAll();
+    }
+
+    public synchronized long getAvailable() {
+        return available;
+    }
+
+    private boolean higherWaiting(Deque<Object> queue) {
+        for (Deque<Object> q : queues) {
+            if (q == queue) {
+                return false;
+            }
+            if (!q.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package org.cubewhy.launcher.game;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Read an asset index one object at a time, without building the whole JSON tree
+ */
+public class AssetIndexReader {
+    /**
+     * Read an asset index
+     *
+     * @param reader   asset index json
+     * @param consumer called for every object
+     * @return count of objects
+     */
+    public static int read(@NotNull Reader reader, @NotNull Consumer<AssetObject> consumer) throws IOException {
+        int count = 0;
+        try (JsonReader json = new JsonReader(reader)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!json.nextName().equals("objects")) {
+                    json.skipValue(); // map_to_resources, virtual
+                    continue;
+                }
+                json.beginObject();
+                while (json.hasNext()) {
+                    consumer.accept(readObject(json.nextName(), json));
+                    count++;
+                }
+                json.endObject();
+            }
+            json.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Bad asset index", e);
+        }
+        return count;
+    }
+
+    @NotNull
+    private static AssetObject readObject(String name, @NotNull JsonReader json) throws IOException {
+        String hash = null;
+        long size = -1;
+        json.beginObject();
+        while (json.hasNext()) {
+            String key = json.nextName();
+            if (key.equals("hash") && json.peek() == JsonToken.STRING) {
+                hash = json.nextString();
+            } else if (key.equals("size") && json.peek() == JsonToken.NUMBER) {
+                size = json.nextLong();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (hash == null || hash.length() < 2) {
+            throw new IOException("Asset " + name + " has no hash");
+        }
+        return new AssetObject(name, hash, size);
+    }
+}
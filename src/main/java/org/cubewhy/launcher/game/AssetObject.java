@@ -0,0 +1,25 @@
+package org.cubewhy.launcher.game;
+
+import org.jetbrains.annotations.NotNull;
+
+public class AssetObject {
+    public final String name;
+    public final String hash;
+    public final long size;
+
+    public AssetObject(String name, String hash, long size) {
+        this.name = name;
+        this.hash = hash;
+        this.size = size;
+    }
+
+    /**
+     * Get the path in the objects dir
+     *
+     * @return [first 2 chars of hash]/[hash]
+     */
+    @NotNull
+    public String getPath() {
+        return hash.substring(0, 2) + "/" + hash;
+    }
+}
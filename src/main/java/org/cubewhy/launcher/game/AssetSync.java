@@ -0,0 +1,90 @@
+package org.cubewhy.launcher.game;
+
+import com.google.gson.JsonObject;
+import org.cubewhy.launcher.download.*;
+import org.cubewhy.launcher.utils.HttpUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sync the asset objects of a Minecraft version into [assetsDir]/objects/[hh]/[hash]
+ */
+public class AssetSync {
+    public static final String resourcesUrl = "https://resources.download.minecraft.net/";
+
+    private final DownloadEngine engine;
+
+    public AssetSync(@NotNull DownloadEngine engine) {
+        this.engine = engine;
+    }
+
+    public AssetSync() {
+        this(new DownloadEngine(32, 32, 64L * 1024 * 1024));
+    }
+
+    /**
+     * Download the asset index and the missing or broken objects of a version
+     *
+     * @param version   Minecraft version
+     * @param assetsDir assets dir (contains indexes and objects)
+     * @return statistics
+     */
+    @NotNull
+    public SyncStats sync(@NotNull String version, @NotNull File assetsDir) throws IOException {
+        long start = System.nanoTime();
+        JsonObject versionJson = Objects.requireNonNull(MinecraftDownloader.getVersionJson(version), "Unknown version " + version);
+        JsonObject ai = versionJson.getAsJsonObject("assetIndex");
+        String indexSha1 = ai.has("sha1") ? ai.get("sha1").getAsString() : null;
+        File indexFile = new File(assetsDir, "indexes/" + ai.get("id").getAsString() + ".json");
+        File objectsDir = new File(assetsDir, "objects");
+        IntegrityManifest manifest = IntegrityManifest.load(assetsDir);
+        if (indexSha1 == null || !manifest.verify(indexFile, indexSha1)) {
+            MirrorRegistry.getDefault().execute(ai.get("url").getAsString(), url -> HttpUtils.download(url, indexFile, indexSha1));
+        }
+
+        // many names may share one object
+        Map<String, AssetObject> objects = new LinkedHashMap<>();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(indexFile.toPath()), StandardCharsets.UTF_8)) {
+            AssetIndexReader.read(reader, object -> objects.putIfAbsent(object.hash, object));
+        }
+        // missing files and files of the wrong size are downloaded without hashing them
+        List<DownloadTask> tasks = new ArrayList<>();
+        Map<File, AssetObject> existing = new LinkedHashMap<>();
+        for (AssetObject object : objects.values()) {
+            File file = new File(objectsDir, object.getPath());
+            if (file.isFile() && (object.size < 0 || file.length() == object.size)) {
+                existing.put(file, object);
+            } else {
+                tasks.add(toTask(object, file));
+            }
+        }
+        manifest.refresh(existing.keySet()); // hash the changed files in parallel
+
+        for (Map.Entry<File, AssetObject> entry : existing.entrySet()) {
+            if (!manifest.verify(entry.getKey(), entry.getValue().hash)) {
+                tasks.add(toTask(entry.getValue(), entry.getKey()));
+            }
+        }
+        DownloadResult result = engine.download(tasks);
+        manifest.recordAll(tasks, result);
+        manifest.saveQuietly();
+        return new SyncStats(objects.size(), objects.size() - tasks.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result);
+    }
+
+    @NotNull
+    private static DownloadTask toTask(@NotNull AssetObject object, @NotNull File file) {
+        return new DownloadTask(resourcesUrl + object.getPath(), file, object.hash, object.size, DownloadTask.PRIORITY_BACKGROUND);
+    }
+}
@@ -0,0 +1,157 @@
+package org.cubewhy.launcher.game;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.cubewhy.launcher.download.*;
+import org.cubewhy.launcher.utils.OsUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Sync the libraries of a Minecraft version, including the natives of the current OS
+ */
+public class LibrarySync {
+    private final DownloadEngine engine;
+
+    public LibrarySync(@NotNull DownloadEngine engine) {
+        this.engine = engine;
+    }
+
+    public LibrarySync() {
+        this(new DownloadEngine());
+    }
+
+    /**
+     * Download the missing or broken libraries of a version
+     *
+     * @param version    Minecraft version
+     * @param libraryDir library dir
+     * @return statistics
+     */
+    @NotNull
+    public SyncStats sync(@NotNull String version, @NotNull File libraryDir) throws IOException {
+        JsonObject versionJson = Objects.requireNonNull(MinecraftDownloader.getVersionJson(version), "Unknown version " + version);
+        return sync(versionJson, libraryDir);
+    }
+
+    /**
+     * Download the missing or broken libraries of a version
+     *
+     * @param versionJson version JSON
+     * @param libraryDir  library dir
+     * @return statistics
+     */
+    @NotNull
+    public SyncStats sync(@NotNull JsonObject versionJson, @NotNull File libraryDir) {
+        long start = System.nanoTime();
+        Map<String, JsonObject> artifacts = getArtifacts(versionJson);
+        IntegrityManifest manifest = IntegrityManifest.load(libraryDir);
+        Set<File> existing = new HashSet<>();
+        for (JsonObject artifact : artifacts.values()) {
+            File file = new File(libraryDir, artifact.get("path").getAsString());
+            if (file.isFile() && (!artifact.has("size") || file.length() == artifact.get("size").getAsLong())) {
+                existing.add(file);
+            }
+        }
+        manifest.refresh(existing); // hash the changed files in parallel
+
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (JsonObject artifact : artifacts.values()) {
+            File file = new File(libraryDir, artifact.get("path").getAsString());
+            String sha1 = artifact.has("sha1") ? artifact.get("sha1").getAsString() : null;
+            if (existing.contains(file) && sha1 != null && manifest.verify(file, sha1)) {
+                continue;
+            }
+            long size = artifact.has("size") ? artifact.get("size").getAsLong() : -1;
+            tasks.add(new DownloadTask(artifact.get("url").getAsString(), file, sha1, size, DownloadTask.PRIORITY_LAUNCH));
+        }
+        DownloadResult result = engine.download(tasks);
+        manifest.recordAll(tasks, result);
+        manifest.saveQuietly();
+        return new SyncStats(artifacts.size(), artifacts.size() - tasks.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result);
+    }
+
+    /**
+     * Get the artifacts (path, sha1, size, url) this OS needs, natives included
+     *
+     * @param versionJson version JSON
+     * @return path to artifact
+     */
+    @NotNull
+    public static Map<String, JsonObject> getArtifacts(@NotNull JsonObject versionJson) {
+        Map<String, JsonObject> artifacts = new LinkedHashMap<>();
+        for (JsonElement element : versionJson.getAsJsonArray("libraries")) {
+            JsonObject lib = element.getAsJsonObject();
+            if (!isAllowed(lib.getAsJsonArray("rules")) || !lib.has("downloads")) {
+                continue;
+            }
+            JsonObject downloads = lib.getAsJsonObject("downloads");
+            if (downloads.has("artifact")) {
+                addArtifact(artifacts, downloads.getAsJsonObject("artifact"));
+            }
+            String classifier = getNativesClassifier(lib);
+            if (classifier != null && downloads.has("classifiers") && downloads.getAsJsonObject("classifiers").has(classifier)) {
+                addArtifact(artifacts, downloads.getAsJsonObject("classifiers").getAsJsonObject(classifier));
+            }
+        }
+        return artifacts;
+    }
+
+    private static void addArtifact(@NotNull Map<String, JsonObject> artifacts, @NotNull JsonObject artifact) {
+        if (artifact.has("path") && artifact.has("url") && !artifact.get("url").getAsString().isEmpty()) {
+            artifacts.putIfAbsent(artifact.get("path").getAsString(), artifact);
+        }
+    }
+
+    @Nullable
+    private static String getNativesClassifier(@NotNull JsonObject lib) {
+        if (!lib.has("natives")) {
+            return null;
+        }
+        JsonObject natives = lib.getAsJsonObject("natives");
+        if (!natives.has(OsUtils.getOsName())) {
+            return null;
+        }
+        return natives.get(OsUtils.getOsName()).getAsString().replace("${arch}", OsUtils.getBits());
+    }
+
+    /**
+     * Check the rules of a library, the last matched rule wins
+     *
+     * @param rules rules, null means allowed
+     */
+    public static boolean isAllowed(@Nullable JsonArray rules) {
+        if (rules == null || rules.size() == 0) {
+            return true;
+        }
+        boolean allowed = false;
+        for (JsonElement element : rules) {
+            JsonObject rule = element.getAsJsonObject();
+            if (rule.has("features")) {
+                continue; // launcher features (demo, custom resolution...) are not used by libraries
+            }
+            if (rule.has("os") && !matchesOs(rule.getAsJsonObject("os"))) {
+                continue;
+            }
+            allowed = rule.get("action").getAsString().equals("allow");
+        }
+        return allowed;
+    }
+
+    private static boolean matchesOs(@NotNull JsonObject os) {
+        if (os.has("name") && !os.get("name").getAsString().equals(OsUtils.getOsName())) {
+            return false;
+        }
+        if (os.has("arch") && !os.get("arch").getAsString().equals(OsUtils.getArch())) {
+            return false;
+        }
+        return !os.has("version") || Pattern.compile(os.get("version").getAsString()).matcher(System.getProperty("os.version")).find();
+    }
+}
@@ -1,21 +1,27 @@
 package org.cubewhy.launcher.game;
 
 import com.google.gson.*;
-import okhttp3.Response;
-import org.cubewhy.launcher.utils.HttpUtils;
+import org.cubewhy.launcher.cache.SingleFlight;
+import org.cubewhy.launcher.download.MirrorRegistry;
+import org.cubewhy.launcher.download.SyncStats;
+import org.cubewhy.launcher.utils.HttpStatusException;
+import org.cubewhy.launcher.utils.JsonUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class MinecraftDownloader {
     public static final String launcherMetaApi = "https://launchermeta.mojang.com/mc/game/version_manifest_v2.json";
+    private static final SingleFlight<String, JsonObject> launcherMetaFlight = new SingleFlight<>();
 
     /**
      * 获取所有游戏版本
@@ -24,12 +30,8 @@ public class MinecraftDownloader {
      */
     @Nullable
     public static JsonObject getLauncherMeta() throws IOException {
-        try (Response response = HttpUtils.get(launcherMetaApi).execute()) {
-            if (response.body() != null) {
-                return JsonParser.parseString(response.body().string()).getAsJsonObject();
-            }
-        }
-        return null;
+        JsonObject launcherMeta = launcherMetaFlight.execute(launcherMetaApi, () -> getJson(launcherMetaApi));
+        return launcherMeta == null ? null : launcherMeta.deepCopy();
     }
 
     /**
@@ -40,26 +42,23 @@ public class MinecraftDownloader {
      */
     @Nullable
     public static JsonObject getVersionJson(String version) throws IOException {
-        String jsonUrl = null;
-
-        JsonObject launcherMeta = getLauncherMeta();
-        JsonArray versions = Objects.requireNonNull(launcherMeta).getAsJsonArray("versions");
-        for (JsonElement version1 : versions) {
-            if (version1.getAsJsonObject().get("id").getAsString().equals(version)) {
-                jsonUrl = version1.getAsJsonObject().get("url").getAsString();
-            }
-        }
-
-        if (jsonUrl == null) {
+        VersionCatalog.Version version1 = VersionCatalog.find(version);
+        if (version1 == null) {
             return null;
         }
 
-        try (Response response = HttpUtils.get(jsonUrl).execute()) {
-            if (response.body() != null) {
-                return JsonParser.parseString(response.body().string()).getAsJsonObject();
-            }
-        }
-        return null;
+        return getJson(version1.url);
+    }
+
+    /**
+     * Get a JSON object from the best Mojang mirror, see MirrorRegistry
+     *
+     * @param url url on any Mojang mirror
+     * @return json object
+     */
+    @NotNull
+    private static JsonObject getJson(String url) throws IOException {
+        return MirrorRegistry.getDefault().get(url, response -> JsonUtils.parse(response).getAsJsonObject());
     }
 
     /**
@@ -71,33 +70,18 @@ public class MinecraftDownloader {
      */
     @NotNull
     public static ArrayList<String> getVersions(boolean release, boolean snapshot, boolean oldAlpha) throws IOException {
-        JsonObject metadata = getLauncherMeta();
-        JsonArray versions = Objects.requireNonNull(metadata).getAsJsonArray("versions");
-
-        ArrayList<String> out = new ArrayList<>();
-
-        for (JsonElement versionJson :
-                versions) {
-            switch (versionJson.getAsJsonObject().get("type").getAsString()) {
-                case "release":
-                    if (!release) {
-                        continue;
-                    }
-                    break;
-                case "old_alpha":
-                    if (!oldAlpha) {
-                        continue;
-                    }
-                    break;
-                case "snapshot":
-                    if (!snapshot) {
-                        continue;
-                    }
-                    break;
-            }
-            out.add(versionJson.getAsJsonObject().get("id").getAsString());
+        VersionCatalog catalog = VersionCatalog.get();
+        Set<String> types = new HashSet<>(catalog.getTypes());
+        if (!release) {
+            types.remove("release");
+        }
+        if (!snapshot) {
+            types.remove("snapshot");
         }
-        return out;
+        if (!oldAlpha) {
+            types.remove("old_alpha");
+        }
+        return new ArrayList<>(catalog.getVersions(types));
     }
 
     /**
@@ -119,15 +103,41 @@ public class MinecraftDownloader {
         JsonObject ai = Objects.requireNonNull(versionJson).getAsJsonObject("assetIndex");
         String name = ai.get("id").getAsString();
         String jsonUrl = ai.get("url").getAsString();
-        try (Response response = HttpUtils.get(jsonUrl).execute()) {
-            if (response.body() != null) {
-                JsonObject json = JsonParser.parseString(response.body().string()).getAsJsonObject();
-                HashMap<String, JsonObject> map = new HashMap<>();
-                map.put(name, json);
-                return map;
+        HashMap<String, JsonObject> map = new HashMap<>();
+        map.put(name, getJson(jsonUrl));
+        return map;
+    }
+
+    /**
+     * Read Asset Index of the version one object at a time
+     * Use this instead of getAssetIndex for big indexes, the whole index is never in memory
+     *
+     * @param version  Minecraft version
+     * @param consumer called for every asset object
+     * @return id of the asset index
+     */
+    public static String streamAssetIndex(String version, Consumer<AssetObject> consumer) throws IOException {
+        JsonObject versionJson = getVersionJson(version);
+        JsonObject ai = Objects.requireNonNull(versionJson).getAsJsonObject("assetIndex");
+        MirrorRegistry.getDefault().get(ai.get("url").getAsString(), response -> {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new HttpStatusException(response.request().url().toString(), response.code());
             }
-        }
-        return null;
+            AssetIndexReader.read(response.body().charStream(), consumer);
+            return null;
+        });
+        return ai.get("id").getAsString();
+    }
+
+    /**
+     * Download assets of the version
+     *
+     * @param version   Minecraft version
+     * @param assetsDir assets dir
+     * @return statistics of the sync
+     */
+    public static SyncStats downloadAssets(String version, File assetsDir) throws IOException {
+        return new AssetSync().sync(version, assetsDir);
     }
 
     /**
@@ -161,33 +171,14 @@ public class MinecraftDownloader {
 
     /**
      * Download Minecraft depends
+     * Libraries already on disk with a matching sha1 are skipped, natives of this OS are included
      *
      * @param version    Minecraft version
      * @param libraryDir library dir
+     * @return statistics of the sync
      */
-    public static void downloadLibrariesOnline(String version, File libraryDir) throws IOException {
-        JsonObject versionJson = getVersionJson(version);
-        JsonArray libraries = Objects.requireNonNull(versionJson).getAsJsonArray("libraries");
-        for (JsonElement lib :
-                libraries) {
-            // String libName = lib.getAsJsonObject().get("name").getAsString();
-            if (!lib.getAsJsonObject().getAsJsonObject("downloads").has("artifact")) {
-                continue; // skip natives
-            }
-            JsonObject artifactInfo = lib.getAsJsonObject().getAsJsonObject("downloads").getAsJsonObject("artifact");
-            String pathToLib = artifactInfo.get("path").getAsString();
-            String url = artifactInfo.get("url").getAsString();
-            // Start downloading
-            byte[] bytes = HttpUtils.download(url);
-            File realLibFile = new File(libraryDir, pathToLib);
-            realLibFile.getParentFile().mkdirs(); // Create dirs
-            realLibFile.createNewFile();
-            try (FileOutputStream fileOutputStream = new FileOutputStream(realLibFile)) {
-                if (bytes != null) {
-                    fileOutputStream.write(bytes); // write file
-                }
-            }
-        }
+    public static SyncStats downloadLibrariesOnline(String version, File libraryDir) throws IOException {
+        return new LibrarySync().sync(version, libraryDir);
     }
 
     /**
@@ -195,8 +186,9 @@ public class MinecraftDownloader {
      *
      * @param version    Minecraft version
      * @param libraryDir library dir
+     * @return statistics of the sync
      */
-    public static void downloadLibrariesOnline(String version, String libraryDir) throws IOException {
-        downloadLibrariesOnline(version, new File(libraryDir));
+    public static SyncStats downloadLibrariesOnline(String version, String libraryDir) throws IOException {
+        return downloadLibrariesOnline(version, new File(libraryDir));
     }
 }
@@ -0,0 +1,293 @@
+package org.cubewhy.launcher.game;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.cubewhy.launcher.LunarDir;
+import org.cubewhy.launcher.cache.SingleFlight;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Index of the Minecraft version manifest
+ * The manifest is saved to disk, an old snapshot is used at once and refreshed in the background
+ */
+public class VersionCatalog {
+    public static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+    public static final File snapshotFile = new File(LunarDir.lunarDir, "cache/version_manifest_v2.json");
+    private static final long MIN_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static volatile File snapshot = snapshotFile;
+    private static volatile VersionCatalog current;
+    private static final AtomicBoolean refreshing = new AtomicBoolean(false); // a background refresh is running
+    private static final SingleFlight<String, VersionCatalog> refreshFlight = new SingleFlight<>();
+
+    private final Map<String, Version> versions = new LinkedHashMap<>();
+    private final Map<String, Integer> positions = new HashMap<>(); // place in the manifest
+    private final Map<String, List<String>> versionsByType = new HashMap<>();
+    private final String latestRelease;
+    private final String latestSnapshot;
+    public final long createdAt;
+
+    /**
+     * Build a catalog from a version manifest
+     *
+     * @param manifest  version_manifest_v2.json
+     * @param createdAt when the manifest was downloaded
+     */
+    public VersionCatalog(@NotNull JsonObject manifest, long createdAt) {
+        this.createdAt = createdAt;
+        for (JsonElement element : manifest.getAsJsonArray("versions")) {
+            JsonObject json = element.getAsJsonObject();
+            Version version = new Version(
+                    json.get("id").getAsString(),
+                    json.get("type").getAsString(),
+                    json.get("url").getAsString(),
+                    json.has("sha1") ? json.get("sha1").getAsString() : null);
+            if (versions.putIfAbsent(version.id, version) != null) {
+                continue;
+            }
+            positions.put(version.id, positions.size());
+            versionsByType.computeIfAbsent(version.type, k -> new ArrayList<>()).add(version.id);
+        }
+        for (Map.Entry<String, List<String>> entry : versionsByType.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        JsonObject latest = manifest.getAsJsonObject("latest");
+        latestRelease = latest != null && latest.has("release") ? latest.get("release").getAsString() : null;
+        latestSnapshot = latest != null && latest.has("snapshot") ? latest.get("snapshot").getAsString() : null;
+    }
+
+    /**
+     * Get the catalog
+     * Memory first, then the snapshot on disk, then the network
+     *
+     * @return catalog
+     */
+    @NotNull
+    public static VersionCatalog get() throws IOException {
+        VersionCatalog catalog = current;
+        if (catalog == null) {
+            synchronized (VersionCatalog.class) {
+                catalog = current;
+                if (catalog == null) {
+                    catalog = loadSnapshot();
+                    if (catalog == null) {
+                        return refresh();
+                    }
+                    current = catalog;
+                }
+            }
+        }
+        if (catalog.isStale()) {
+            refreshInBackground();
+        }
+        return catalog;
+    }
+
+    /**
+     * Keep the snapshot somewhere else, the catalog in memory is dropped
+     *
+     * @param file snapshot file, default snapshotFile
+     */
+    public static synchronized void setSnapshotFile(@NotNull File file) {
+        snapshot = file;
+        current = null;
+    }
+
+    /**
+     * Download the manifest again and save the snapshot
+     * Concurrent calls share one download
+     *
+     * @return new catalog
+     */
+    @NotNull
+    public static VersionCatalog refresh() throws IOException {
+        return refreshFlight.execute("manifest", () -> {
+            JsonObject manifest = Objects.requireNonNull(MinecraftDownloader.getLauncherMeta());
+            VersionCatalog catalog = new VersionCatalog(manifest, System.currentTimeMillis());
+            current = catalog;
+            saveSnapshot(manifest);
+            return catalog;
+        });
+    }
+
+    /**
+     * Find a version, refresh the catalog once if the version is missing (maybe it was just released)
+     *
+     * @param id version id
+     * @return version, null if not found
+     */
+    @Nullable
+    public static Version find(@NotNull String id) throws IOException {
+        VersionCatalog catalog = get();
+        Version version = catalog.getVersion(id);
+        if (version == null && System.currentTimeMillis() - catalog.createdAt > MIN_REFRESH_INTERVAL) {
+            version = refresh().getVersion(id);
+        }
+        return version;
+    }
+
+    /**
+     * Get a version by id
+     *
+     * @param id version id
+     * @return version, null if not found
+     */
+    @Nullable
+    public Version getVersion(@NotNull String id) {
+        return versions.get(id);
+    }
+
+    /**
+     * Get ids of a version type
+     *
+     * @param type release, snapshot, old_beta, old_alpha
+     * @return ids, newest first
+     */
+    @NotNull
+    public List<String> getVersions(@NotNull String type) {
+        List<String> list = versionsByType.get(type);
+        return list == null ? Collections.<String>emptyList() : list;
+    }
+
+    /**
+     * Get ids of some version types
+     *
+     * @param types wanted types, see getTypes
+     * @return ids, newest first
+     */
+    @NotNull
+    public List<String> getVersions(@NotNull Collection<String> types) {
+        List<String> ids = new ArrayList<>();
+        int wanted = 0;
+        for (String type : versionsByType.keySet()) {
+            if (types.contains(type)) {
+                ids.addAll(versionsByType.get(type));
+                wanted++;
+            }
+        }
+        if (wanted == versionsByType.size()) {
+            return new ArrayList<>(versions.keySet()); // every type, already in order
+        }
+        if (wanted > 1) {
+            ids.sort(Comparator.comparingInt(positions::get));
+        }
+        return ids;
+    }
+
+    /**
+     * Get the version types of the manifest
+     *
+     * @return types, like release and snapshot
+     */
+    @NotNull
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(versionsByType.keySet());
+    }
+
+    /**
+     * Get all version ids
+     *
+     * @return ids, newest first
+     */
+    @NotNull
+    public Set<String> getVersionIds() {
+        return Collections.unmodifiableSet(versions.keySet());
+    }
+
+    @Nullable
+    public String getLatestRelease() {
+        return latestRelease;
+    }
+
+    @Nullable
+    public String getLatestSnapshot() {
+        return latestSnapshot;
+    }
+
+    public boolean isStale() {
+        return System.currentTimeMillis() - createdAt > REFRESH_INTERVAL;
+    }
+
+    private static void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                refresh();
+            } catch (IOException | RuntimeException ignored) {
+                // keep the old catalog, try again next time
+            } finally {
+                refreshing.set(false);
+            }
+        }, "LauncherLib-VersionCatalog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Nullable
+    private static VersionCatalog loadSnapshot() {
+        File file = snapshot;
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            return new VersionCatalog(JsonParser.parseReader(reader).getAsJsonObject(), file.lastModified());
+        } catch (Exception e) {
+            return null; // broken snapshot, download again
+        }
+    }
+
+    private static void saveSnapshot(@NotNull JsonObject manifest) {
+        File file = snapshot;
+        Path temp = null;
+        try {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            temp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), file.getName(), ".tmp");
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8)) {
+                new Gson().toJson(manifest, writer);
+            }
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // the snapshot is optional
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    public static class Version {
+        public final String id;
+        public final String type;
+        public final String url;
+        public final String sha1;
+
+        public Version(String id, String type, String url, String sha1) {
+            this.id = id;
+            this.type = type;
+            this.url = url;
+            this.sha1 = sha1;
+        }
+    }
+}
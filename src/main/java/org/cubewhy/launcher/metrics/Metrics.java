@@ -0,0 +1,146 @@
+package org.cubewhy.launcher.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timings and counters of metadata, hash, download, unzip, launch and login
+ * Nothing is recorded until a listener is added
+ */
+public class Metrics {
+    public static final String PHASE_METADATA = "metadata";
+    public static final String PHASE_PROFILE = "profile";
+    public static final String PHASE_HASH = "hash";
+    public static final String PHASE_DOWNLOAD = "download";
+    public static final String PHASE_UNZIP = "unzip";
+    public static final String PHASE_LAUNCH = "launch";
+    /**
+     * Handling of one login request
+     */
+    public static final String PHASE_LOGIN = "login";
+    /**
+     * Time from the first unanswered login request of an instance to the request that got a link
+     */
+    public static final String PHASE_LOGIN_WAIT = "login.wait";
+
+    public static final String COUNTER_BYTES_DOWNLOADED = "download.bytes";
+    public static final String COUNTER_FILES_DOWNLOADED = "download.files";
+    public static final String COUNTER_FILES_FAILED = "download.failed";
+    public static final String COUNTER_RETRIES = "download.retries";
+    public static final String COUNTER_BYTES_HASHED = "hash.bytes";
+    public static final String COUNTER_FILES_HASHED = "hash.files";
+    public static final String COUNTER_FILES_UNZIPPED = "unzip.files";
+    public static final String COUNTER_METADATA_HIT = "cache.metadata.hit";
+    public static final String COUNTER_METADATA_MISS = "cache.metadata.miss";
+    public static final String COUNTER_METADATA_REVALIDATED = "cache.metadata.revalidated";
+    public static final String COUNTER_STORE_HIT = "cache.store.hit";
+    public static final String COUNTER_STORE_MISS = "cache.store.miss";
+    public static final String COUNTER_MANIFEST_HIT = "cache.manifest.hit";
+    public static final String COUNTER_MANIFEST_MISS = "cache.manifest.miss";
+    public static final String COUNTER_NATIVES_HIT = "cache.natives.hit";
+    public static final String COUNTER_NATIVES_MISS = "cache.natives.miss";
+    public static final String COUNTER_PROFILE_HIT = "cache.profile.hit";
+    public static final String COUNTER_PROFILE_MISS = "cache.profile.miss";
+    public static final String COUNTER_LOGIN_REQUESTS = "login.requests";
+    public static final String COUNTER_LOGIN_MATCHED = "login.matched";
+    public static final String COUNTER_LOGIN_EMPTY = "login.empty";
+
+    private static final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private static final Span NOOP = new Span(null);
+
+    public static void addListener(@NotNull MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(@NotNull MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    public static boolean isEnabled() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Start timing a phase, use with try-with-resources
+     *
+     * @param phase phase name
+     * @return span, call fail() before close if the phase failed
+     */
+    @NotNull
+    public static Span span(@NotNull String phase) {
+        return listeners.isEmpty() ? NOOP : new Span(phase);
+    }
+
+    /**
+     * Add to a counter
+     *
+     * @param counter counter name
+     * @param delta   amount
+     */
+    public static void count(@NotNull String counter, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onCount(counter, delta);
+            } catch (RuntimeException ignored) {
+                // metrics must never break the launcher
+            }
+        }
+    }
+
+    public static void increment(@NotNull String counter) {
+        count(counter, 1);
+    }
+
+    /**
+     * Report a phase timed elsewhere
+     *
+     * @param phase   phase name
+     * @param nanos   duration
+     * @param success whether the phase succeeded
+     */
+    public static void record(@NotNull String phase, long nanos, boolean success) {
+        if (!listeners.isEmpty()) {
+            phase(phase, nanos, success);
+        }
+    }
+
+    private static void phase(String phase, long nanos, boolean success) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onPhase(phase, nanos, success);
+            } catch (RuntimeException ignored) {
+                // metrics must never break the launcher
+            }
+        }
+    }
+
+    public static class Span implements AutoCloseable {
+        private final String phase;
+        private final long start;
+        private boolean success = true;
+
+        private Span(String phase) {
+            this.phase = phase;
+            this.start = phase == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Mark the phase as failed
+         */
+        public void fail() {
+            success = false;
+        }
+
+        @Override
+        public void close() {
+            if (phase != null) {
+                phase(phase, System.nanoTime() - start, success);
+            }
+        }
+    }
+}
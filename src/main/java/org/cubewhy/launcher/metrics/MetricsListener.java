@@ -0,0 +1,26 @@
+package org.cubewhy.launcher.metrics;
+
+/**
+ * Receives timings and counters of the launcher, see Metrics
+ * Called on the working threads, implementations must be thread-safe and fast
+ */
+public interface MetricsListener {
+    /**
+     * A phase ended
+     *
+     * @param phase   phase name, see Metrics.PHASE_*
+     * @param nanos   duration
+     * @param success false if the phase threw
+     */
+    default void onPhase(String phase, long nanos, boolean success) {
+    }
+
+    /**
+     * A counter changed
+     *
+     * @param counter counter name, see Metrics.COUNTER_*
+     * @param delta   amount added
+     */
+    default void onCount(String counter, long delta) {
+    }
+}
@@ -0,0 +1,113 @@
+package org.cubewhy.launcher.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps totals of all phases and counters in memory
+ * Add it with Metrics.addListener and read it from the exporter of your monitoring
+ */
+public class MetricsRegistry implements MetricsListener {
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PhaseStats> phases = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPhase(String phase, long nanos, boolean success) {
+        phases.computeIfAbsent(phase, k -> new PhaseStats()).record(nanos, success);
+    }
+
+    @Override
+    public void onCount(String counter, long delta) {
+        counters.computeIfAbsent(counter, k -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Get a counter
+     *
+     * @param counter counter name
+     * @return value, 0 if never counted
+     */
+    public long getCount(@NotNull String counter) {
+        LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Get all counters
+     *
+     * @return counter to value, sorted by name
+     */
+    @NotNull
+    public Map<String, Long> getCounters() {
+        Map<String, Long> out = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            out.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(out);
+    }
+
+    /**
+     * Get stats of a phase
+     *
+     * @param phase phase name
+     * @return stats, null if the phase never ran
+     */
+    public PhaseStats getPhase(@NotNull String phase) {
+        return phases.get(phase);
+    }
+
+    @NotNull
+    public Map<String, PhaseStats> getPhases() {
+        return Collections.unmodifiableMap(new TreeMap<>(phases));
+    }
+
+    public void reset() {
+        counters.clear();
+        phases.clear();
+    }
+
+    public static class PhaseStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos, boolean success) {
+            count.increment();
+            if (!success) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return "PhaseStats{count=" + getCount() + ", failures=" + getFailures()
+                    + ", totalMs=" + getTotalNanos() / 1_000_000 + ", maxMs=" + getMaxNanos() / 1_000_000 + "}";
+        }
+    }
+}
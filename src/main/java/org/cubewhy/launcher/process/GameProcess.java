@@ -0,0 +1,187 @@
+package org.cubewhy.launcher.process;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A running game, its stdout/stderr are drained on background threads
+ */
+public class GameProcess {
+    public static final int DEFAULT_BUFFER_LINES = 2000;
+
+    private final Process process;
+    private final List<String> command;
+    private final LogBuffer log;
+    private final List<LineListener> listeners = new CopyOnWriteArrayList<>();
+    private final Writer sink;
+    private final AtomicInteger openPumps = new AtomicInteger(2);
+    private final Thread stdoutPump;
+    private final Thread stderrPump;
+
+    private GameProcess(@NotNull Process process, @NotNull List<String> command, @NotNull LogBuffer log,
+                        @Nullable Writer sink, @Nullable LineListener listener) {
+        this.process = process;
+        this.command = Collections.unmodifiableList(new ArrayList<>(command));
+        this.log = log;
+        if (listener != null) {
+            listeners.add(listener);
+        }
+        this.sink = sink;
+        Charset charset = Charset.defaultCharset();
+        int id = System.identityHashCode(process);
+        Runnable pumpEnded = () -> {
+            if (openPumps.decrementAndGet() == 0) {
+                closeSink(); // both streams ended, even if nobody waits for the game
+            }
+        };
+        this.stdoutPump = new OutputPump(process.getInputStream(), false, log, listeners, sink, charset, pumpEnded).start("LauncherLib-Game-" + id + "-stdout");
+        this.stderrPump = new OutputPump(process.getErrorStream(), true, log, listeners, sink, charset, pumpEnded).start("LauncherLib-Game-" + id + "-stderr");
+    }
+
+    /**
+     * Start a process and drain its output
+     *
+     * @param command     argument vector, command.get(0) is the executable
+     * @param workingDir  working dir, null to inherit
+     * @param bufferLines how many lines to keep in memory
+     * @param logFile     write the output to this file too, nullable
+     * @param listener    line callback, nullable, more can be added later
+     * @return the running game
+     */
+    @NotNull
+    public static GameProcess start(@NotNull List<String> command, @Nullable File workingDir, int bufferLines,
+                                    @Nullable File logFile, @Nullable LineListener listener) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (workingDir != null) {
+            builder.directory(workingDir);
+        }
+        LogBuffer log = new LogBuffer(bufferLines);
+        // everything that may fail happens before the start, a started game must always be drained
+        Writer sink = logFile == null ? null : openSink(logFile);
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(sink);
+            throw e;
+        }
+        try {
+            return new GameProcess(process, command, log, sink, listener);
+        } catch (RuntimeException | Error e) {
+            process.destroyForcibly();
+            closeQuietly(sink);
+            throw e;
+        }
+    }
+
+    @NotNull
+    private static Writer openSink(@NotNull File logFile) throws IOException {
+        File parent = logFile.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), StandardCharsets.UTF_8));
+    }
+
+    private static void closeQuietly(@Nullable Writer writer) {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Start a process and drain its output
+     *
+     * @param command argument vector, command.get(0) is the executable
+     * @return the running game
+     */
+    @NotNull
+    public static GameProcess start(@NotNull List<String> command) throws IOException {
+        return start(command, null, DEFAULT_BUFFER_LINES, null, null);
+    }
+
+    public void addLineListener(@NotNull LineListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeLineListener(@NotNull LineListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the last lines of the output
+     *
+     * @return log buffer
+     */
+    @NotNull
+    public LogBuffer getLog() {
+        return log;
+    }
+
+    @NotNull
+    public Process getProcess() {
+        return process;
+    }
+
+    @NotNull
+    public List<String> getCommand() {
+        return command;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Wait for the game to exit and its output to be drained
+     *
+     * @return exit code
+     */
+    public int waitFor() throws InterruptedException {
+        int code = process.waitFor();
+        stdoutPump.join();
+        stderrPump.join(); // the pumps close the log file
+        return code;
+    }
+
+    /**
+     * Wait for the game to exit
+     *
+     * @return true if the game exited
+     */
+    public boolean waitFor(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        if (!process.waitFor(timeout, unit)) {
+            return false;
+        }
+        waitFor();
+        return true;
+    }
+
+    public void destroy() {
+        process.destroy();
+    }
+
+    private void closeSink() {
+        if (sink != null) {
+            synchronized (sink) {
+                try {
+                    sink.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.cubewhy.launcher.process;
+
+public interface LineListener {
+    /**
+     * A line was printed by the game
+     * Called on the pump thread, keep it short
+     *
+     * @param line  the line, without line separator
+     * @param error is from stderr
+     */
+    void onLine(String line, boolean error);
+}
@@ -0,0 +1,57 @@
+package org.cubewhy.launcher.process;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last N lines of the game output
+ */
+public class LogBuffer {
+    private final String[] lines;
+    private int next = 0;
+    private long count = 0;
+
+    public LogBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1");
+        }
+        this.lines = new String[capacity];
+    }
+
+    public synchronized void add(@NotNull String line) {
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+        count++;
+    }
+
+    /**
+     * Get the kept lines, oldest first
+     *
+     * @return lines
+     */
+    @NotNull
+    public synchronized List<String> getLines() {
+        int size = (int) Math.min(count, lines.length);
+        List<String> out = new ArrayList<>(size);
+        int start = count > lines.length ? next : 0;
+        for (int i = 0; i < size; i++) {
+            out.add(lines[(start + i) % lines.length]);
+        }
+        return out;
+    }
+
+    /**
+     * Get count of all lines ever added, including the dropped ones
+     *
+     * @return count
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+}
@@ -0,0 +1,110 @@
+package org.cubewhy.launcher.process;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Drain a stream of the game on its own thread, so the game never blocks on a full pipe
+ */
+public class OutputPump implements Runnable {
+    private final InputStream input;
+    private final boolean error;
+    private final LogBuffer buffer;
+    private final List<LineListener> listeners;
+    private final Writer sink;
+    private final Charset charset;
+    private final Runnable onEnd;
+
+    /**
+     * Create a pump
+     *
+     * @param input     stdout or stderr of the process
+     * @param error     is stderr
+     * @param buffer    ring buffer for the last lines
+     * @param listeners line callbacks (the list may change while running)
+     * @param sink      log file writer, nullable, shared by both pumps
+     * @param charset   charset of the output
+     */
+    public OutputPump(@NotNull InputStream input, boolean error, @NotNull LogBuffer buffer, @NotNull List<LineListener> listeners,
+                      @Nullable Writer sink, @NotNull Charset charset) {
+        this(input, error, buffer, listeners, sink, charset, null);
+    }
+
+    /**
+     * Create a pump
+     *
+     * @param input     stdout or stderr of the process
+     * @param error     is stderr
+     * @param buffer    ring buffer for the last lines
+     * @param listeners line callbacks (the list may change while running)
+     * @param sink      log file writer, nullable, shared by both pumps
+     * @param charset   charset of the output
+     * @param onEnd     called once the stream ended, nullable
+     */
+    public OutputPump(@NotNull InputStream input, boolean error, @NotNull LogBuffer buffer, @NotNull List<LineListener> listeners,
+                      @Nullable Writer sink, @NotNull Charset charset, @Nullable Runnable onEnd) {
+        this.input = input;
+        this.error = error;
+        this.buffer = buffer;
+        this.listeners = listeners;
+        this.sink = sink;
+        this.charset = charset;
+        this.onEnd = onEnd;
+    }
+
+    /**
+     * Start the pump on a daemon thread
+     *
+     * @param name thread name
+     * @return the thread
+     */
+    @NotNull
+    public Thread start(@NotNull String name) {
+        Thread thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Override
+    public void run() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, charset))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                buffer.add(line);
+                if (sink != null) {
+                    writeSink(line);
+                }
+                for (LineListener listener : listeners) {
+                    try {
+                        listener.onLine(line, error);
+                    } catch (RuntimeException ignored) {
+                        // a broken listener must not stop the pump
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // the process exited
+        } finally {
+            if (onEnd != null) {
+                onEnd.run();
+            }
+        }
+    }
+
+    private void writeSink(String line) {
+        synchronized (sink) {
+            try {
+                sink.write(line);
+                sink.write(System.lineSeparator());
+                sink.flush();
+            } catch (IOException ignored) {
+                // the log file is optional
+            }
+        }
+    }
+}
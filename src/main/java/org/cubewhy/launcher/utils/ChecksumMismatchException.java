@@ -0,0 +1,27 @@
+package org.cubewhy.launcher.utils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A downloaded file doesn't match its expected hash, the server sent the wrong content
+ */
+public class ChecksumMismatchException extends IOException {
+    public final String expected;
+    public final String actual;
+    /**
+     * Whether the file was continued from a kept partial file, which may be stale
+     */
+    public final boolean resumed;
+
+    public ChecksumMismatchException(File target, String expected, String actual) {
+        this(target, expected, actual, false);
+    }
+
+    public ChecksumMismatchException(File target, String expected, String actual, boolean resumed) {
+        super("SHA-1 mismatch for " + target + ": expected " + expected + ", got " + actual);
+        this.expected = expected;
+        this.actual = actual;
+        this.resumed = resumed;
+    }
+}
@@ -0,0 +1,55 @@
+package org.cubewhy.launcher.utils;
+
+import java.io.IOException;
+
+/**
+ * Callbacks of one transfer, called on the downloading thread
+ */
+public interface DownloadListener {
+    DownloadListener NONE = new DownloadListener() {
+    };
+
+    /**
+     * An attempt is about to send its request
+     * Called once per attempt, may block (e.g. to wait for a budget)
+     *
+     * @param offset bytes of the file already on disk, the request asks for the rest
+     */
+    default void onRequest(long offset) throws IOException {
+    }
+
+    /**
+     * The response is ready and the body is about to be read
+     * Called at most once per attempt
+     *
+     * @param contentLength bytes this attempt will transfer, -1 if unknown
+     */
+    default void onStart(long contentLength) throws IOException {
+    }
+
+    /**
+     * The response is ready and the body is about to be read
+     * Calls onStart(contentLength) by default
+     *
+     * @param offset        bytes of the file already on disk, 0 if this attempt starts from scratch
+     * @param contentLength bytes this attempt will transfer, -1 if unknown
+     */
+    default void onStart(long offset, long contentLength) throws IOException {
+        onStart(contentLength);
+    }
+
+    /**
+     * Some bytes were written to disk
+     *
+     * @param count count of bytes
+     */
+    default void onBytes(int count) throws IOException {
+    }
+
+    /**
+     * The attempt ended, successfully or not
+     * Called once for every onRequest
+     */
+    default void onEnd() {
+    }
+}
@@ -0,0 +1,171 @@
+package org.cubewhy.launcher.utils;
+
+import org.cubewhy.launcher.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * SHA-1 of files
+ * Every thread reuses one direct buffer, digest and output arrays, so hashing does not make garbage except the result
+ */
+public class FileHasher {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int BATCH_THRESHOLD = 16;
+
+    private static final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    /**
+     * Get sha1 of a file
+     *
+     * @param file target file
+     * @return sha1 (hex)
+     */
+    @NotNull
+    public static String sha1(@NotNull File file) throws IOException {
+        State state = FileHasher.state.get();
+        MessageDigest digest = state.digest;
+        ByteBuffer buffer = state.buffer;
+        digest.reset();
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+            int len;
+            while ((len = channel.read(buffer)) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+                size += len;
+            }
+        }
+        Metrics.increment(Metrics.COUNTER_FILES_HASHED);
+        Metrics.count(Metrics.COUNTER_BYTES_HASHED, size);
+        try {
+            digest.digest(state.hash, 0, state.hash.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        StringUtils.toHex(state.hash, state.hex);
+        return new String(state.hex);
+    }
+
+    /**
+     * Hash many files in parallel with the common fork-join pool
+     *
+     * @param files files
+     * @return hashes and errors
+     */
+    @NotNull
+    public static BatchResult sha1All(@NotNull Collection<File> files) {
+        return sha1All(files, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Hash many files in parallel
+     *
+     * @param files files
+     * @param pool  fork-join pool to run on
+     * @return hashes and errors
+     */
+    @NotNull
+    public static BatchResult sha1All(@NotNull Collection<File> files, @NotNull ForkJoinPool pool) {
+        BatchResult result = new BatchResult();
+        if (!files.isEmpty()) {
+            try (Metrics.Span span = Metrics.span(Metrics.PHASE_HASH)) {
+                pool.invoke(new HashAction(new ArrayList<>(files), 0, files.size(), result));
+                if (!result.isSuccess()) {
+                    span.fail();
+                }
+            }
+        }
+        return result;
+    }
+
+    public static class BatchResult {
+        private final Map<File, String> hashes = new ConcurrentHashMap<>();
+        private final Map<File, IOException> errors = new ConcurrentHashMap<>();
+
+        /**
+         * Get hashes of the files which were read
+         *
+         * @return file to sha1
+         */
+        @NotNull
+        public Map<File, String> getHashes() {
+            return Collections.unmodifiableMap(hashes);
+        }
+
+        /**
+         * Get files which can't be read
+         *
+         * @return file to error
+         */
+        @NotNull
+        public Map<File, IOException> getErrors() {
+            return Collections.unmodifiableMap(errors);
+        }
+
+        public boolean isSuccess() {
+            return errors.isEmpty();
+        }
+    }
+
+    private static class HashAction extends RecursiveAction {
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final BatchResult result;
+
+        HashAction(List<File> files, int from, int to, BatchResult result) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    File file = files.get(i);
+                    try {
+                        result.hashes.put(file, sha1(file));
+                    } catch (IOException e) {
+                        result.errors.put(file, e);
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new HashAction(files, from, middle, result), new HashAction(files, middle, to, result));
+        }
+    }
+
+    private static class State {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final MessageDigest digest;
+        final byte[] hash;
+        final char[] hex;
+
+        State() {
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            hash = new byte[digest.getDigestLength()];
+            hex = new char[hash.length * 2];
+        }
+    }
+}
@@ -1,29 +1,20 @@
 package org.cubewhy.launcher.utils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.math.BigInteger;
-import java.security.MessageDigest;
 
 public class FileUtils {
+    /**
+     * Get sha1 of a file
+     * Use FileHasher.sha1 if you want the error
+     *
+     * @param file target file
+     * @return sha1, null if the file can't be read
+     */
     public static String sha1(File file) {
-        try (FileInputStream in = new FileInputStream(file)) {
-            MessageDigest digest = MessageDigest.getInstance("SHA-1");
-            byte[] buffer = new byte[1024 * 1024 * 10];
-            int len = 0;
-            while ((len = in.read(buffer)) > 0) {
-                digest.update(buffer, 0, len);
-            }
-            String sha1 = new BigInteger(1, digest.digest()).toString(16);
-            int length = 40 - sha1.length();
-            if (length > 0) {
-                for (int i = 0; i < length; i++) {
-                    sha1 = "0" + sha1;
-                }
-            }
-            return sha1;
-        } catch (Exception ignored) {
+        try {
+            return FileHasher.sha1(file);
+        } catch (IOException ignored) {
         }
         return null;
     }
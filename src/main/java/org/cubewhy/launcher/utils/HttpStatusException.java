@@ -0,0 +1,22 @@
+package org.cubewhy.launcher.utils;
+
+import java.io.IOException;
+
+/**
+ * The server answered with an error status
+ */
+public class HttpStatusException extends IOException {
+    public final int code;
+
+    public HttpStatusException(String url, int code) {
+        super("Failed to request " + url + ": HTTP " + code);
+        this.code = code;
+    }
+
+    /**
+     * Check may the request succeed if it is sent again
+     */
+    public boolean isTransient() {
+        return code == 408 || code == 429 || code >= 500;
+    }
+}
@@ -0,0 +1,198 @@
+package org.cubewhy.launcher.utils;
+
+import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the shared OkHttpClient, apply them with HttpUtils.configure
+ */
+public class HttpTransport {
+    private int maxIdleConnections = 16;
+    private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+    private int maxRequests = 64;
+    private int maxRequestsPerHost = 16;
+    private long connectTimeoutMillis = 10_000;
+    private long readTimeoutMillis = 30_000;
+    private long writeTimeoutMillis = 30_000;
+    private long callTimeoutMillis = 0;
+    private boolean http2 = true;
+    private boolean compression = true;
+    private File cacheDir;
+    private long cacheSize = 64L * 1024 * 1024;
+
+    /**
+     * Connection pool
+     *
+     * @param maxIdleConnections idle connections kept per client
+     * @param keepAliveMillis    how long an idle connection is kept
+     * @return this
+     */
+    public HttpTransport setConnectionPool(int maxIdleConnections, long keepAliveMillis) {
+        if (maxIdleConnections < 0 || keepAliveMillis < 1) {
+            throw new IllegalArgumentException("Bad connection pool config");
+        }
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveMillis = keepAliveMillis;
+        return this;
+    }
+
+    /**
+     * Limits of the dispatcher, only asynchronous calls (Call.enqueue) are limited
+     * Blocking downloads are limited per host by DownloadEngine
+     *
+     * @param maxRequests        max running async requests
+     * @param maxRequestsPerHost max running async requests to one host
+     * @return this
+     */
+    public HttpTransport setDispatcher(int maxRequests, int maxRequestsPerHost) {
+        if (maxRequests < 1 || maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("Bad dispatcher config");
+        }
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return this;
+    }
+
+    /**
+     * Timeouts (ms), 0 for no timeout
+     *
+     * @param connect connect timeout
+     * @param read    read timeout (between two packets)
+     * @param write   write timeout
+     * @param call    timeout of a whole call
+     * @return this
+     */
+    public HttpTransport setTimeouts(long connect, long read, long write, long call) {
+        if (connect < 0 || read < 0 || write < 0 || call < 0) {
+            throw new IllegalArgumentException("Bad timeouts");
+        }
+        this.connectTimeoutMillis = connect;
+        this.readTimeoutMillis = read;
+        this.writeTimeoutMillis = write;
+        this.callTimeoutMillis = call;
+        return this;
+    }
+
+    /**
+     * Use HTTP/2 if the server supports it
+     * With HTTP/2 all requests to a host share one connection, disable it if one TCP stream is slower than many
+     *
+     * @param http2 prefer HTTP/2
+     * @return this
+     */
+    public HttpTransport setHttp2(boolean http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    /**
+     * Ask for gzip responses (decoded transparently), disable to save CPU on fast links
+     *
+     * @param compression allow compressed responses
+     * @return this
+     */
+    public HttpTransport setCompression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Cache cacheable GET responses (version manifests, indexes) on disk
+     * Downloaded files are never stored in this cache
+     *
+     * @param cacheDir  cache dir, null to disable
+     * @param cacheSize max size of the cache (bytes)
+     * @return this
+     */
+    public HttpTransport setCache(@Nullable File cacheDir, long cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Bad cache size");
+        }
+        this.cacheDir = cacheDir;
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Build a client with these settings
+     *
+     * @param existing cache of the current client, reused if it has the same dir (one dir can't be opened twice)
+     * @return new client
+     */
+    @NotNull
+    public OkHttpClient build(@Nullable Cache existing) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                .protocols(http2 ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) : Collections.singletonList(Protocol.HTTP_1_1));
+        if (cacheDir != null) {
+            builder.cache(isSameCache(existing) ? existing : new Cache(cacheDir, cacheSize));
+        }
+        if (!compression) {
+            builder.addInterceptor(chain -> {
+                Request request = chain.request();
+                if (request.header("Accept-Encoding") != null) {
+                    return chain.proceed(request);
+                }
+                return chain.proceed(request.newBuilder().header("Accept-Encoding", "identity").build());
+            });
+        }
+        return builder.build();
+    }
+
+    @NotNull
+    public OkHttpClient build() {
+        return build(null);
+    }
+
+    boolean isSameCache(@Nullable Cache cache) {
+        return cache != null && cacheDir != null
+                && cache.directory().getAbsoluteFile().equals(cacheDir.getAbsoluteFile())
+                && cache.maxSize() == cacheSize;
+    }
+}
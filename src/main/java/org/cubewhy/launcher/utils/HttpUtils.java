@@ -3,19 +3,96 @@ package org.cubewhy.launcher.utils;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import okhttp3.*;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class HttpUtils {
-    public static final OkHttpClient httpClient = new OkHttpClient();
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
+
+    private static volatile OkHttpClient client = new HttpTransport().build();
+    /**
+     * The shared client, kept in sync by configure, assigning it has no effect
+     *
+     * @deprecated use getHttpClient() and configure(HttpTransport)
+     */
+    @Deprecated
+    public static volatile OkHttpClient httpClient = client;
     public static final MediaType JSON = MediaType.get("application/json");
 
+    private static HttpTransport transport = new HttpTransport();
+
+    /**
+     * Rebuild the shared client with new settings
+     * Calls already running finish on the old client, its idle connections are closed
+     * and its cache (if not reused) is closed once its dispatcher is idle
+     *
+     * @param transport settings
+     * @return the new client
+     */
+    @NotNull
+    public static synchronized OkHttpClient configure(@NotNull HttpTransport transport) {
+        OkHttpClient old = client;
+        Cache oldCache = old.cache();
+        OkHttpClient built = transport.build(oldCache);
+        client = built;
+        httpClient = built;
+        HttpUtils.transport = transport;
+        old.connectionPool().evictAll();
+        if (oldCache != null && oldCache != built.cache()) {
+            closeWhenIdle(old.dispatcher(), oldCache);
+        }
+        return built;
+    }
+
+    private static void closeWhenIdle(@NotNull Dispatcher dispatcher, @NotNull Cache cache) {
+        Runnable close = () -> {
+            try {
+                cache.close();
+            } catch (IOException ignored) {
+            }
+        };
+        dispatcher.setIdleCallback(close);
+        if (dispatcher.runningCallsCount() == 0) {
+            close.run(); // already idle, closing twice is harmless
+        }
+    }
+
+    /**
+     * Get the shared client
+     *
+     * @return client
+     */
+    @NotNull
+    public static OkHttpClient getHttpClient() {
+        return client;
+    }
+
+    /**
+     * Get the settings of the shared client
+     *
+     * @return settings
+     */
+    @NotNull
+    public static synchronized HttpTransport getTransport() {
+        return transport;
+    }
+
     public static Call get(String url) throws IOException {
         Request request = new Request.Builder()
                 .url(url)
                 .build();
 
-        return httpClient.newCall(request);
+        return getHttpClient().newCall(request);
     }
 
     public static Call post(String url, String json) throws IOException {
@@ -24,7 +101,7 @@ public class HttpUtils {
                 .url(url)
                 .post(body)
                 .build();
-        return httpClient.newCall(request);
+        return getHttpClient().newCall(request);
     }
 
     public static Call post(String url, JsonElement json) throws IOException {
@@ -34,7 +111,7 @@ public class HttpUtils {
     }
 
     public static Call request(Request request) throws IOException {
-        return httpClient.newCall(request);
+        return getHttpClient().newCall(request);
     }
 
     /**
@@ -50,5 +127,326 @@ public class HttpUtils {
         }
         return null;
     }
-}
 
+    /**
+     * Download a file to disk without buffering it in memory
+     * Transient errors are retried with the default policy, resuming the partial file
+     *
+     * @param url    target url
+     * @param target where save the file
+     * @param sha1   expected sha1, skip the check if null
+     * @return size of the file
+     */
+    public static long download(String url, File target, @Nullable String sha1) throws IOException {
+        return download(url, target, sha1, RetryPolicy.DEFAULT, null);
+    }
+
+    /**
+     * Save the body of a response to disk
+     * The body is written to a temp file and renamed only if the sha1 matches
+     *
+     * @param response http response
+     * @param target   where save the file
+     * @param sha1     expected sha1, skip the check if null
+     * @return size of the file
+     */
+    public static long download(@NotNull Response response, @NotNull File target, @Nullable String sha1) throws IOException {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            throw new IOException("Failed to download " + response.request().url() + ": HTTP " + response.code());
+        }
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = Files.createTempFile(parent.toPath(), target.getName() + ".", ".part").toFile();
+        MessageDigest digest = sha1 == null ? null : newSha1();
+        long size = 0;
+        try (InputStream in = body.byteStream(); OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+                if (digest != null) {
+                    digest.update(buffer, 0, len);
+                }
+                size += len;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (digest != null) {
+            String actual = StringUtils.toHex(digest.digest());
+            if (!actual.equalsIgnoreCase(sha1)) {
+                temp.delete();
+                throw new ChecksumMismatchException(target, sha1, actual);
+            }
+        }
+        moveAtomic(temp, target);
+        return size;
+    }
+
+    /**
+     * Download a file to disk, keep the partial file on errors and continue it with a Range request
+     * The partial file is only continued if the server confirms it didn't change (ETag / Last-Modified / length)
+     * A continued file that fails the sha1 check is downloaded once more from scratch
+     * Concurrent downloads of the same target each write their own file, only one of them continues the kept part
+     *
+     * @param url         target url
+     * @param target      where save the file
+     * @param sha1        expected sha1, skip the check if null
+     * @param retryPolicy how to retry transient errors
+     * @param listener    transfer callbacks, nullable
+     * @return size of the file
+     */
+    public static long download(String url, File target, @Nullable String sha1, @NotNull RetryPolicy retryPolicy, @Nullable DownloadListener listener) throws IOException {
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File part = new File(parent, target.getName() + ".part");
+        File meta = new File(parent, target.getName() + ".part.meta");
+        String id = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        File work = new File(parent, target.getName() + "." + id + ".part");
+        File workMeta = new File(parent, target.getName() + "." + id + ".part.meta");
+        if (part.renameTo(work) && !meta.renameTo(workMeta)) {
+            work.delete(); // claimed the part but not what it belongs to
+        }
+        boolean retriedFresh = false;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return downloadAttempt(url, target, work, workMeta, sha1, listener == null ? DownloadListener.NONE : listener);
+                } catch (ChecksumMismatchException e) {
+                    if (!e.resumed || retriedFresh) {
+                        throw e;
+                    }
+                    retriedFresh = true; // the kept part was stale, the part is gone so this starts from byte 0
+                    Metrics.increment(Metrics.COUNTER_RETRIES);
+                } catch (IOException e) {
+                    if (attempt >= retryPolicy.maxAttempts || !isRetryable(e)) {
+                        throw e;
+                    }
+                    Metrics.increment(Metrics.COUNTER_RETRIES);
+                    try {
+                        Thread.sleep(retryPolicy.delayFor(attempt));
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Download interrupted");
+                    }
+                }
+            }
+        } finally {
+            park(work, workMeta, part, meta);
+        }
+    }
+
+    /**
+     * Keep an unfinished part under the shared name so a later download can continue it
+     */
+    private static void park(File work, File workMeta, File part, File meta) {
+        if (!work.isFile() || !workMeta.isFile()) {
+            deletePart(work, workMeta); // finished, or nothing to check the part against
+            return;
+        }
+        try {
+            Files.move(work.toPath(), part.toPath()); // fails if another download already kept its part
+            Files.move(workMeta.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deletePart(work, workMeta);
+        }
+    }
+
+    private static long downloadAttempt(String url, File target, File part, File meta, @Nullable String sha1, DownloadListener listener) throws IOException {
+        PartInfo info = part.isFile() ? PartInfo.read(meta) : null;
+        long offset = info == null ? 0 : part.length();
+        Request.Builder request = new Request.Builder().url(url).cacheControl(NO_STORE); // files don't belong in the http cache
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+            if (info.validator != null) {
+                request.header("If-Range", info.validator);
+            }
+        }
+        listener.onRequest(offset);
+        try (Response response = getHttpClient().newCall(request.build()).execute()) {
+            ResponseBody body = response.body();
+            if (response.code() == 416 && offset > 0 && offset == info.length) {
+                return finish(part, meta, target, sha1, null, true); // the part is already complete
+            }
+            if (!response.isSuccessful() || body == null) {
+                if (response.code() == 416) {
+                    deletePart(part, meta);
+                }
+                throw new HttpStatusException(url, response.code());
+            }
+            boolean append = false;
+            if (response.code() == 206 && offset > 0) {
+                long[] range = parseContentRange(response.header("Content-Range"));
+                if (range == null || range[0] != offset || (info.length >= 0 && range[1] >= 0 && range[1] != info.length)) {
+                    deletePart(part, meta);
+                    throw new IOException("Unexpected range of " + url + ": " + response.header("Content-Range"));
+                }
+                append = true;
+            } else if (response.code() == 206) {
+                throw new IOException("Unexpected partial response of " + url);
+            }
+            long total = append ? info.length : body.contentLength();
+            if (!append) {
+                new PartInfo(validatorOf(response), total).write(meta);
+            }
+            MessageDigest digest = sha1 == null ? null : newSha1();
+            if (append && digest != null) {
+                updateDigest(digest, part);
+            }
+            listener.onStart(append ? offset : 0, body.contentLength());
+            try (InputStream in = body.byteStream(); OutputStream out = new FileOutputStream(part, append)) {
+                byte[] buffer = new byte[64 * 1024];
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                    if (digest != null) {
+                        digest.update(buffer, 0, len);
+                    }
+                    listener.onBytes(len);
+                }
+            }
+            if (total >= 0 && part.length() != total) {
+                throw new EOFException("Incomplete download of " + url + ": " + part.length() + "/" + total);
+            }
+            return finish(part, meta, target, sha1, digest, append);
+        } finally {
+            listener.onEnd();
+        }
+    }
+
+    private static long finish(File part, File meta, File target, @Nullable String sha1, @Nullable MessageDigest digest, boolean resumed) throws IOException {
+        if (sha1 != null) {
+            if (digest == null) {
+                digest = newSha1();
+                updateDigest(digest, part);
+            }
+            String actual = StringUtils.toHex(digest.digest());
+            if (!actual.equalsIgnoreCase(sha1)) {
+                deletePart(part, meta);
+                throw new ChecksumMismatchException(target, sha1, actual, resumed);
+            }
+        }
+        long size = part.length();
+        moveAtomic(part, target);
+        meta.delete();
+        return size;
+    }
+
+    private static boolean isRetryable(IOException e) {
+        if (Thread.currentThread().isInterrupted() || e instanceof ChecksumMismatchException) {
+            return false; // the same server sends the same wrong content again, fail over instead
+        }
+        return !(e instanceof HttpStatusException) || ((HttpStatusException) e).isTransient();
+    }
+
+    private static void updateDigest(MessageDigest digest, File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        }
+    }
+
+    private static void deletePart(File part, File meta) {
+        part.delete();
+        meta.delete();
+    }
+
+    @Nullable
+    private static String validatorOf(Response response) {
+        String etag = response.header("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag; // If-Range only accepts strong validators
+        }
+        return response.header("Last-Modified");
+    }
+
+    /**
+     * Parse "bytes start-end/total"
+     *
+     * @return [start, total], total is -1 if unknown
+     */
+    private static long[] parseContentRange(@Nullable String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return null;
+        }
+        try {
+            String range = contentRange.substring(6).trim();
+            int dash = range.indexOf('-');
+            int slash = range.indexOf('/');
+            long start = Long.parseLong(range.substring(0, dash));
+            String total = range.substring(slash + 1);
+            return new long[]{start, total.equals("*") ? -1 : Long.parseLong(total)};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * What the partial file belongs to
+     */
+    private static class PartInfo {
+        final String validator;
+        final long length;
+
+        PartInfo(@Nullable String validator, long length) {
+            this.validator = validator;
+            this.length = length;
+        }
+
+        @Nullable
+        static PartInfo read(File meta) {
+            if (!meta.isFile()) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(meta)) {
+                properties.load(in);
+                PartInfo info = new PartInfo(properties.getProperty("validator"), Long.parseLong(properties.getProperty("length", "-1")));
+                return info.validator == null && info.length < 0 ? null : info;
+            } catch (IOException | NumberFormatException e) {
+                return null;
+            }
+        }
+
+        void write(File meta) throws IOException {
+            if (validator == null && length < 0) {
+                meta.delete(); // nothing to check the part against, never resume it
+                return;
+            }
+            Properties properties = new Properties();
+            if (validator != null) {
+                properties.setProperty("validator", validator);
+            }
+            properties.setProperty("length", String.valueOf(length));
+            try (OutputStream out = new FileOutputStream(meta)) {
+                properties.store(out, null);
+            }
+        }
+    }
+
+    private static void moveAtomic(@NotNull File from, @NotNull File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @NotNull
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-1
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.cubewhy.launcher.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+public class JsonUtils {
+    /**
+     * Parse the body of a response without copying it into a String first
+     *
+     * @param response http response
+     * @return json
+     */
+    @NotNull
+    public static JsonElement parse(@NotNull Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            throw new HttpStatusException(response.request().url().toString(), response.code());
+        }
+        try (JsonReader reader = new JsonReader(body.charStream())) {
+            return JsonParser.parseReader(reader);
+        } catch (RuntimeException e) {
+            throw new IOException("Bad JSON from " + response.request().url(), e);
+        }
+    }
+}
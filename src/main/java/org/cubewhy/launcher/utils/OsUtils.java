@@ -0,0 +1,61 @@
+package org.cubewhy.launcher.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+public class OsUtils {
+    /**
+     * Get OS name in the format of Mojang's version JSON
+     *
+     * @return windows, osx or linux
+     */
+    @NotNull
+    public static String getOsName() {
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        if (os.contains("win")) {
+            return "windows";
+        } else if (os.contains("mac") || os.contains("darwin")) {
+            return "osx";
+        }
+        return "linux";
+    }
+
+    /**
+     * Get OS architecture in the format of Mojang's version JSON
+     *
+     * @return x86, x64, arm64 or the raw os.arch
+     */
+    @NotNull
+    public static String getArch() {
+        String arch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+        switch (arch) {
+            case "x86":
+            case "i386":
+            case "i686":
+                return "x86";
+            case "amd64":
+            case "x86_64":
+                return "x64";
+            case "aarch64":
+            case "arm64":
+                return "arm64";
+            default:
+                return arch;
+        }
+    }
+
+    /**
+     * Get the bitness of the JVM, used by ${arch} in native classifiers
+     *
+     * @return 32 or 64
+     */
+    @NotNull
+    public static String getBits() {
+        String model = System.getProperty("sun.arch.data.model");
+        if (model != null) {
+            return model;
+        }
+        return getArch().equals("x86") ? "32" : "64";
+    }
+}
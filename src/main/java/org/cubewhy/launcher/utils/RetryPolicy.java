@@ -0,0 +1,49 @@
+package org.cubewhy.launcher.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How to retry failed transfers: exponential backoff with random jitter
+ */
+public class RetryPolicy {
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0);
+    public static final RetryPolicy DEFAULT = new RetryPolicy(4, 500, 10_000, 0.25);
+
+    public final int maxAttempts;
+    public final long initialDelayMillis;
+    public final long maxDelayMillis;
+    public final double jitter;
+
+    /**
+     * Create a retry policy
+     *
+     * @param maxAttempts        max attempts, including the first one
+     * @param initialDelayMillis delay before the first retry, doubled on every retry
+     * @param maxDelayMillis     max delay between two attempts
+     * @param jitter             random part of the delay (0 - 1), 0.25 means ±25%
+     */
+    public RetryPolicy(int maxAttempts, long initialDelayMillis, long maxDelayMillis, double jitter) {
+        if (maxAttempts < 1 || initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis || jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Bad retry policy");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Get the delay before the next attempt
+     *
+     * @param failedAttempts count of failed attempts (>= 1)
+     * @return delay (ms)
+     */
+    public long delayFor(int failedAttempts) {
+        long delay = Math.min(maxDelayMillis, initialDelayMillis << Math.min(failedAttempts - 1, 30));
+        if (delay <= 0 || jitter == 0) {
+            return Math.max(0, delay);
+        }
+        double spread = delay * jitter;
+        return Math.max(0, Math.round(delay - spread + ThreadLocalRandom.current().nextDouble() * 2 * spread));
+    }
+}
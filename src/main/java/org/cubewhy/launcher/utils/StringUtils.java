@@ -1,6 +1,8 @@
 package org.cubewhy.launcher.utils;
 
 public class StringUtils {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     public static int count(String input, char target) {
         int c = 0;
         char[] chars = input.toCharArray();
@@ -12,4 +14,29 @@ public class StringUtils {
         }
         return c;
     }
+
+    /**
+     * Encode bytes as lower case hex
+     *
+     * @param bytes input
+     * @return hex string
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        toHex(bytes, chars);
+        return new String(chars);
+    }
+
+    /**
+     * Encode bytes as lower case hex into a given array
+     *
+     * @param bytes input
+     * @param out   output, at least twice as long as the input
+     */
+    public static void toHex(byte[] bytes, char[] out) {
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+    }
 }
@@ -1,36 +1,82 @@
 package org.cubewhy.launcher.utils;
 
+import org.cubewhy.launcher.metrics.Metrics;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 public class ZipUtils {
+    /**
+     * 解压完成后写入的标记文件, 内容为存档的sha1
+     */
+    public static final String MARKER_FILE = ".unzip.sha1";
+
     /**
      * 解压缩Zip存档
      * @param input zip存档
      * @param outputDir 解压缩目标目录
      * */
     public static void unZip(File input, File outputDir) throws IOException {
-        ZipFile zipfile = new ZipFile(input);
-        ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(input.toPath()));
-
-        ZipEntry entry;
-        while ((entry = zipInputStream.getNextEntry()) != null) {
-            File out = new File(outputDir, entry.getName());
-            if (entry.isDirectory()) {
-                out.mkdirs();
-            } else {
-                out.createNewFile();
-                InputStream entryInputStream = zipfile.getInputStream(entry);
-                try (FileOutputStream fileOutPutStream = new FileOutputStream(out)) {
-                    int b;
-                    while ((b = entryInputStream.read()) != -1) {
-                        fileOutPutStream.write(b);
+        String base = outputDir.getCanonicalPath() + File.separator;
+        try (Metrics.Span span = Metrics.span(Metrics.PHASE_UNZIP)) {
+            try (ZipFile zipfile = new ZipFile(input)) {
+                List<ZipEntry> files = new ArrayList<>();
+                for (ZipEntry entry : Collections.list(zipfile.entries())) {
+                    File out = new File(outputDir, entry.getName());
+                    if (!out.getCanonicalPath().startsWith(base)) {
+                        throw new IOException("Bad zip entry: " + entry.getName()); // zip slip
                     }
+                    if (entry.isDirectory()) {
+                        out.mkdirs();
+                    } else {
+                        out.getParentFile().mkdirs();
+                        files.add(entry);
+                    }
+                }
+                // entries are independent, write them in parallel
+                try {
+                    files.parallelStream().forEach(entry -> {
+                        try (InputStream entryInputStream = zipfile.getInputStream(entry)) {
+                            Files.copy(entryInputStream, new File(outputDir, entry.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
                 }
+                Metrics.count(Metrics.COUNTER_FILES_UNZIPPED, files.size());
+            } catch (IOException | RuntimeException e) {
+                span.fail();
+                throw e;
             }
         }
     }
+
+    /**
+     * 解压缩Zip存档, 如果存档与上次解压的相同则跳过
+     * @param input zip存档
+     * @param outputDir 解压缩目标目录
+     * @return 是否进行了解压
+     * */
+    public static boolean unZipIfChanged(File input, File outputDir) throws IOException {
+        String sha1 = FileHasher.sha1(input);
+        File marker = new File(outputDir, MARKER_FILE);
+        if (marker.isFile() && sha1.equals(new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).trim())) {
+            Metrics.increment(Metrics.COUNTER_NATIVES_HIT);
+            return false;
+        }
+        Metrics.increment(Metrics.COUNTER_NATIVES_MISS);
+        marker.delete(); // an interrupted extraction must not look finished
+        unZip(input, outputDir);
+        Files.write(marker.toPath(), sha1.getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
 }
@@ -42,4 +42,16 @@ public class JavaAgent {
         }
         return jvmArgs;
     }
+
+    /**
+     * 获取实际执行时要添加的参数 (不带引号, 用于参数列表)
+     * @return arg for jvm
+     * */
+    public String getJvmArg() {
+        String jvmArg = "-javaagent:" + this.file.getAbsolutePath();
+        if (!this.args.isEmpty()) {
+            jvmArg += "=" + this.args;
+        }
+        return jvmArg;
+    }
 }
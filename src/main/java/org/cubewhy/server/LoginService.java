@@ -1,15 +1,56 @@
 package org.cubewhy.server;
 
 import co.gongzh.procbridge.Server;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
+/**
+ * Hands auth links to LunarClient instances (procbridge "open-window" requests)
+ * Links can be queued for one instance or shared by all of them, all methods are thread-safe
+ */
 @SuppressWarnings("unused")
 public class LoginService {
-    public final Server server = new Server(28189, (method, args) -> method != null ? handleRequest(method, args) : null);
-    public final Queue<String> queue = new LinkedList<>();
+    public static final int DEFAULT_PORT = 28189;
+
+    public final Server server;
+    /**
+     * Links shared by all instances
+     */
+    public final Queue<String> queue = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentMap<String, Queue<String>> instanceQueues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> waitingSince = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder empty = new LongAdder();
+    private volatile Function<Object, String> router = LoginService::getInstanceId;
+
+    /**
+     * Create a login service
+     *
+     * @param port port of the procbridge server
+     */
+    public LoginService(int port) {
+        this.server = new Server(port, (method, args) -> method != null ? handleRequest(method, args) : null);
+    }
+
+    public LoginService() {
+        this(DEFAULT_PORT);
+    }
 
     /**
      * Start the server
@@ -18,27 +59,188 @@ public class LoginService {
         server.start(); // do start
     }
 
+    public void stopServer() {
+        server.stop();
+    }
+
     public void addAccount(String authLink) {
         queue.add(authLink); // add a authLink
     }
 
+    /**
+     * Queue an auth link for one instance
+     *
+     * @param instance instance id, see setRouter
+     * @param authLink auth link
+     */
+    public void addAccount(@NotNull String instance, String authLink) {
+        queueOf(instance).add(authLink);
+    }
+
+    /**
+     * Queue many auth links shared by all instances
+     *
+     * @param authLinks auth links
+     */
+    public void addAccounts(@NotNull Collection<String> authLinks) {
+        queue.addAll(authLinks);
+    }
+
+    /**
+     * Queue many auth links for one instance
+     *
+     * @param instance  instance id
+     * @param authLinks auth links
+     */
+    public void addAccounts(@NotNull String instance, @NotNull Collection<String> authLinks) {
+        queueOf(instance).addAll(authLinks);
+    }
+
+    /**
+     * Queue one auth link per instance
+     *
+     * @param authLinks instance id to auth link
+     */
+    public void addAccounts(@NotNull Map<String, String> authLinks) {
+        for (Map.Entry<String, String> entry : authLinks.entrySet()) {
+            addAccount(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Remove the queued links of an instance (e.g. the instance exited)
+     *
+     * @param instance instance id
+     */
+    public void removeInstance(@NotNull String instance) {
+        instanceQueues.remove(instance);
+        waitingSince.remove(instance);
+    }
+
+    /**
+     * Take the next link of an instance, or a shared one if the instance has none
+     *
+     * @param instance instance id, null for shared links only
+     * @return auth link, null if there is none
+     */
+    @Nullable
+    public String poll(@Nullable String instance) {
+        if (instance != null) {
+            Queue<String> own = instanceQueues.get(instance);
+            String link = own == null ? null : own.poll();
+            if (link != null) {
+                return link;
+            }
+        }
+        return queue.poll();
+    }
+
+    /**
+     * Count queued links of an instance, shared links not included
+     *
+     * @param instance instance id
+     * @return count
+     */
+    public int getPending(@NotNull String instance) {
+        Queue<String> own = instanceQueues.get(instance);
+        return own == null ? 0 : own.size();
+    }
+
+    /**
+     * Set how to find the instance of a request
+     * The default reads "instance" or "instanceId" of a JSON object payload
+     *
+     * @param router payload to instance id (null for shared links)
+     */
+    public void setRouter(@NotNull Function<Object, String> router) {
+        this.router = router;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getMatchedCount() {
+        return matched.sum();
+    }
+
+    public long getEmptyCount() {
+        return empty.sum();
+    }
+
+    @NotNull
+    private Queue<String> queueOf(@NotNull String instance) {
+        return instanceQueues.computeIfAbsent(instance, key -> new ConcurrentLinkedQueue<>());
+    }
+
     /**
      * Handles LunarClient requests
      *
+     * @param method request method
+     * @param args   request payload
      * @return json of callbackInfo
      */
-    private HashMap<String, String> handleRequest(String method, Object args) {
+    public HashMap<String, String> handleRequest(String method, Object args) {
         HashMap<String, String> result = new HashMap<>();
         if (method.equals("open-window")) {
-            // Pop a token url
-            String auth = queue.poll();
-            if (auth == null) {
-                result.put("status", "CLOSED_WITH_NO_URL");
-            } else {
-                result.put("status", "MATCHED_TARGET_URL");
-                result.put("url", auth);
+            requests.increment();
+            Metrics.increment(Metrics.COUNTER_LOGIN_REQUESTS);
+            try (Metrics.Span ignored = Metrics.span(Metrics.PHASE_LOGIN)) {
+                long now = System.nanoTime();
+                String instance = route(args);
+                // Pop a token url
+                String auth = poll(instance);
+                if (auth == null) {
+                    empty.increment();
+                    Metrics.increment(Metrics.COUNTER_LOGIN_EMPTY);
+                    if (instance != null) {
+                        waitingSince.putIfAbsent(instance, now);
+                    }
+                    result.put("status", "CLOSED_WITH_NO_URL");
+                } else {
+                    matched.increment();
+                    Metrics.increment(Metrics.COUNTER_LOGIN_MATCHED);
+                    Long since = instance == null ? null : waitingSince.remove(instance);
+                    Metrics.record(Metrics.PHASE_LOGIN_WAIT, since == null ? 0 : now - since, true);
+                    result.put("status", "MATCHED_TARGET_URL");
+                    result.put("url", auth);
+                }
             }
         }
         return result;
     }
+
+    @Nullable
+    private String route(Object args) {
+        try {
+            return router.apply(args);
+        } catch (RuntimeException e) {
+            return null; // unknown payload, use the shared links
+        }
+    }
+
+    /**
+     * Read the instance id of a payload
+     *
+     * @param payload request payload (JSON object)
+     * @return instance id, null if missing
+     */
+    @Nullable
+    public static String getInstanceId(@Nullable Object payload) {
+        if (payload == null) {
+            return null;
+        }
+        JsonElement json = payload instanceof JsonElement ? (JsonElement) payload : JsonParser.parseString(payload.toString());
+        if (!json.isJsonObject()) {
+            return null;
+        }
+        JsonObject object = json.getAsJsonObject();
+        for (String key : new String[]{"instance", "instanceId"}) {
+            JsonElement id = object.get(key);
+            if (id != null && id.isJsonPrimitive()) {
+                return id.getAsString();
+            }
+        }
+        return null;
+    }
 }
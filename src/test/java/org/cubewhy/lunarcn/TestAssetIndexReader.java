@@ -0,0 +1,71 @@
+package org.cubewhy.lunarcn;
+
+import org.cubewhy.launcher.game.AssetIndexReader;
+import org.cubewhy.launcher.game.AssetObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Asset index reader")
+public class TestAssetIndexReader {
+    private static final String OBJECTS = "\"objects\":{"
+            + "\"icons/icon_16x16.png\":{\"hash\":\"bdf48ef6b5d0d23bbb02e17d04865216179f510a\",\"size\":3665},"
+            + "\"minecraft/sounds/ambient/cave/cave1.ogg\":{\"size\":18936,\"hash\":\"5f39bd0a4dfb4b5fa39d04e4fe3a1e1a4a6e27e0\",\"extra\":[1,{}]},"
+            + "\"pack.mcmeta\":{\"hash\":\"4a3a3c9a8a0a0f8e6b8f6f7e4d5c3b2a1a0f9e8d\"}"
+            + "}";
+
+    @DisplayName("Read every object, skip the other fields")
+    @Test
+    public void read() throws IOException {
+        List<AssetObject> objects = new ArrayList<>();
+        int count = AssetIndexReader.read(new StringReader("{\"map_to_resources\":true," + OBJECTS + ",\"virtual\":{\"a\":[1]}}"), objects::add);
+
+        assertEquals(3, count);
+        assertEquals(3, objects.size());
+        assertEquals("icons/icon_16x16.png", objects.get(0).name);
+        assertEquals("bd/bdf48ef6b5d0d23bbb02e17d04865216179f510a", objects.get(0).getPath());
+        assertEquals(3665, objects.get(0).size);
+        assertEquals("5f39bd0a4dfb4b5fa39d04e4fe3a1e1a4a6e27e0", objects.get(1).hash);
+        assertEquals(18936, objects.get(1).size);
+        assertEquals(-1, objects.get(2).size);
+    }
+
+    @DisplayName("Hand out objects while the index is still being read")
+    @Test
+    public void streaming() {
+        String json = "{" + OBJECTS.substring(0, OBJECTS.indexOf("\"pack.mcmeta\""));
+        // a connection dropped in the middle of the index
+        Reader truncated = new StringReader(json) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, Math.min(len, 64));
+                if (n == -1) {
+                    throw new IOException("connection reset");
+                }
+                return n;
+            }
+        };
+        List<AssetObject> objects = new ArrayList<>();
+        IOException e = assertThrows(IOException.class, () -> AssetIndexReader.read(truncated, objects::add));
+        assertEquals("connection reset", e.getMessage());
+        assertEquals(2, objects.size());
+    }
+
+    @DisplayName("Reject broken indexes")
+    @Test
+    public void broken() {
+        assertThrows(IOException.class, () -> AssetIndexReader.read(new StringReader("{\"objects\":{\"a\":{\"size\":1}}}"), object -> {
+        }));
+        assertThrows(IOException.class, () -> AssetIndexReader.read(new StringReader("{\"objects\":[]}"), object -> {
+        }));
+        assertThrows(IOException.class, () -> AssetIndexReader.read(new StringReader("{\"objects\":{"), object -> {
+        }));
+    }
+}
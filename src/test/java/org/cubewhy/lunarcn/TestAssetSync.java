@@ -0,0 +1,146 @@
+package org.cubewhy.lunarcn;
+
+import com.sun.net.httpserver.HttpServer;
+import org.cubewhy.launcher.download.DownloadEngine;
+import org.cubewhy.launcher.download.Mirror;
+import org.cubewhy.launcher.download.MirrorRegistry;
+import org.cubewhy.launcher.download.SyncStats;
+import org.cubewhy.launcher.game.AssetSync;
+import org.cubewhy.launcher.game.VersionCatalog;
+import org.cubewhy.launcher.utils.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Asset sync")
+public class TestAssetSync {
+    private static final String META = "https://piston-meta.mojang.com/";
+
+    private final MirrorRegistry defaultRegistry = MirrorRegistry.getDefault();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.add(path);
+            byte[] body = files.get(path);
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String local = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        MirrorRegistry registry = new MirrorRegistry();
+        registry.setFailurePolicy(1, TimeUnit.HOURS.toMillis(1));
+        Mirror meta = registry.addMirror(MirrorRegistry.MOJANG_META, META);
+        Mirror assets = registry.addMirror(MirrorRegistry.MOJANG_ASSETS, AssetSync.resourcesUrl);
+        registry.addMirror(MirrorRegistry.MOJANG_META, local);
+        registry.addMirror(MirrorRegistry.MOJANG_ASSETS, local);
+        registry.reportFailure(meta); // never leave the sandbox
+        registry.reportFailure(assets);
+        MirrorRegistry.setDefault(registry);
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+        MirrorRegistry.setDefault(defaultRegistry);
+        VersionCatalog.setSnapshotFile(VersionCatalog.snapshotFile);
+    }
+
+    private static String sha1(byte[] bytes) throws NoSuchAlgorithmException {
+        return StringUtils.toHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+    }
+
+    private static String path(String hash) {
+        return hash.substring(0, 2) + "/" + hash;
+    }
+
+    @DisplayName("Queue truncated and missing objects, skip verified ones")
+    @Test
+    public void sync() throws Exception {
+        byte[] good = "good object".getBytes(StandardCharsets.UTF_8);
+        byte[] truncated = "truncated object".getBytes(StandardCharsets.UTF_8);
+        byte[] missing = "missing object".getBytes(StandardCharsets.UTF_8);
+        String index = "{\"objects\":{"
+                + "\"minecraft/sounds/good.ogg\":{\"hash\":\"" + sha1(good) + "\",\"size\":" + good.length + "},"
+                + "\"minecraft/sounds/truncated.ogg\":{\"hash\":\"" + sha1(truncated) + "\",\"size\":" + truncated.length + "},"
+                + "\"minecraft/lang/missing.json\":{\"hash\":\"" + sha1(missing) + "\",\"size\":" + missing.length + "},"
+                + "\"minecraft/sounds/good-copy.ogg\":{\"hash\":\"" + sha1(good) + "\",\"size\":" + good.length + "}"
+                + "}}";
+        byte[] indexBytes = index.getBytes(StandardCharsets.UTF_8);
+        String versionJson = "{\"id\":\"1.8.9\",\"assetIndex\":{\"id\":\"1.8\",\"sha1\":\"" + sha1(indexBytes) + "\",\"size\":"
+                + indexBytes.length + ",\"url\":\"" + META + "v1/packages/1.8.json\"}}";
+        files.put("/v1/packages/1.8.9.json", versionJson.getBytes(StandardCharsets.UTF_8));
+        files.put("/v1/packages/1.8.json", indexBytes);
+        for (byte[] object : Arrays.asList(good, truncated, missing)) {
+            files.put("/" + path(sha1(object)), object);
+        }
+
+        // a fresh snapshot, the manifest is never downloaded
+        File snapshot = new File(tempDir, "version_manifest_v2.json");
+        Files.write(snapshot.toPath(), ("{\"latest\":{\"release\":\"1.8.9\"},\"versions\":[{\"id\":\"1.8.9\",\"type\":\"release\",\"url\":\""
+                + META + "v1/packages/1.8.9.json\"}]}").getBytes(StandardCharsets.UTF_8));
+        VersionCatalog.setSnapshotFile(snapshot);
+
+        File assetsDir = new File(tempDir, "assets");
+        File objects = new File(assetsDir, "objects");
+        File goodFile = new File(objects, path(sha1(good)));
+        File truncatedFile = new File(objects, path(sha1(truncated)));
+        goodFile.getParentFile().mkdirs();
+        truncatedFile.getParentFile().mkdirs();
+        Files.write(goodFile.toPath(), good);
+        Files.write(truncatedFile.toPath(), Arrays.copyOf(truncated, 5));
+
+        SyncStats stats = new AssetSync(new DownloadEngine(4, 4, 64 * 1024)).sync("1.8.9", assetsDir);
+
+        assertTrue(stats.isSuccess(), stats.toString());
+        assertEquals(3, stats.files); // the copy shares its object
+        assertEquals(1, stats.skipped);
+        assertEquals(2, stats.fetched);
+        assertEquals(0, stats.failed);
+        assertEquals(truncated.length + missing.length, stats.bytes);
+        assertEquals(new HashSet<>(Arrays.asList("/v1/packages/1.8.9.json", "/v1/packages/1.8.json",
+                "/" + path(sha1(truncated)), "/" + path(sha1(missing)))), new HashSet<>(requests));
+        assertArrayEquals(truncated, Files.readAllBytes(truncatedFile.toPath()));
+        assertArrayEquals(missing, Files.readAllBytes(new File(objects, path(sha1(missing))).toPath()));
+        assertTrue(new File(assetsDir, "indexes/1.8.json").isFile());
+
+        // everything is verified now, only the version json is fetched again
+        requests.clear();
+        stats = new AssetSync(new DownloadEngine(4, 4, 64 * 1024)).sync("1.8.9", assetsDir);
+        assertEquals(3, stats.skipped);
+        assertEquals(0, stats.fetched);
+        assertEquals(Collections.singletonList("/v1/packages/1.8.9.json"), requests);
+    }
+}
@@ -0,0 +1,51 @@
+package org.cubewhy.lunarcn;
+
+import org.cubewhy.launcher.AsyncLauncher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Async launcher")
+public class TestAsyncLauncher {
+    @DisplayName("Run independent calls at the same time")
+    @Test
+    public void concurrent() {
+        AsyncLauncher launcher = new AsyncLauncher();
+        CountDownLatch latch = new CountDownLatch(2);
+        // each call waits for the other one, so they only finish if they run concurrently
+        CompletableFuture<Boolean> first = launcher.supply(() -> {
+            latch.countDown();
+            return await(latch);
+        });
+        CompletableFuture<Boolean> second = launcher.supply(() -> {
+            latch.countDown();
+            return await(latch);
+        });
+        assertTrue(first.thenCombine(second, (a, b) -> a && b).join());
+    }
+
+    @DisplayName("Complete exceptionally with the IOException")
+    @Test
+    public void failure() {
+        CompletableFuture<String> future = new AsyncLauncher(Runnable::run).supply(() -> {
+            throw new FileNotFoundException("index.json");
+        });
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(FileNotFoundException.class, e.getCause());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.cubewhy.lunarcn;
+
+import com.sun.net.httpserver.HttpServer;
+import org.cubewhy.launcher.download.ArtifactStore;
+import org.cubewhy.launcher.download.DownloadEngine;
+import org.cubewhy.launcher.download.DownloadProgress;
+import org.cubewhy.launcher.download.DownloadResult;
+import org.cubewhy.launcher.download.DownloadTask;
+import org.cubewhy.launcher.download.ProgressListener;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.metrics.MetricsRegistry;
+import org.cubewhy.launcher.utils.RetryPolicy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Download engine")
+public class TestDownloadEngine {
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger restarts = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/slow")) {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignored) {
+                }
+                active.decrementAndGet();
+            }
+            if (path.startsWith("/missing")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            if (path.startsWith("/restart") && restarts.incrementAndGet() == 1) {
+                // drops the first response halfway and ignores Range afterwards
+                exchange.sendResponseHeaders(200, 100);
+                exchange.getResponseBody().write(new byte[40]);
+                exchange.close();
+                return;
+            }
+            byte[] body = path.startsWith("/restart") ? new byte[100] : path.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @DisplayName("Download files in parallel and report failures")
+    @Test
+    public void downloadAll() throws IOException {
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(new DownloadTask(baseUrl + "/file" + i, new File(tempDir, "file" + i)));
+        }
+        DownloadTask missing = new DownloadTask(baseUrl + "/missing", new File(tempDir, "missing"));
+        tasks.add(missing);
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        Metrics.addListener(metrics);
+        DownloadResult result;
+        try {
+            result = new DownloadEngine(4, 2, 64 * 1024).download(tasks);
+        } finally {
+            Metrics.removeListener(metrics);
+        }
+
+        assertEquals(21, result.getTotal());
+        assertEquals(20, metrics.getCount(Metrics.COUNTER_FILES_DOWNLOADED));
+        assertEquals(1, metrics.getCount(Metrics.COUNTER_FILES_FAILED));
+        assertEquals(1, metrics.getPhase(Metrics.PHASE_DOWNLOAD).getFailures());
+        assertEquals(1, result.getFailures().size());
+        assertTrue(result.getFailures().containsKey(missing));
+        for (int i = 0; i < 20; i++) {
+            assertEquals("/file" + i, new String(Files.readAllBytes(new File(tempDir, "file" + i).toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @DisplayName("Reject files with a wrong sha1")
+    @Test
+    public void verifySha1() throws IOException {
+        File good = new File(tempDir, "good");
+        File bad = new File(tempDir, "bad");
+        List<DownloadTask> tasks = new ArrayList<>();
+        tasks.add(new DownloadTask(baseUrl + "/good", good, "f11416f6ccb2ee1893bcd1897725e3c99ce017c7"));
+        tasks.add(new DownloadTask(baseUrl + "/bad", bad, "0000000000000000000000000000000000000000"));
+
+        DownloadResult result = new DownloadEngine().download(tasks);
+
+        assertEquals(1, result.getFailures().size());
+        assertTrue(good.isFile());
+        assertFalse(bad.exists());
+        assertFalse(new File(tempDir, "bad.part").exists());
+    }
+
+    @DisplayName("Share objects between install dirs")
+    @Test
+    public void sharedStore() throws IOException {
+        ArtifactStore store = new ArtifactStore(new File(tempDir, "objects"));
+        String sha1 = "f11416f6ccb2ee1893bcd1897725e3c99ce017c7";
+        File first = new File(tempDir, "1.8.9/good.jar");
+        File second = new File(tempDir, "1.12.2/good.jar");
+
+        DownloadEngine engine = new DownloadEngine().setStore(store);
+        assertTrue(engine.download(Collections.singletonList(new DownloadTask(baseUrl + "/good", first, sha1))).isSuccess());
+        assertTrue(engine.download(Collections.singletonList(new DownloadTask(baseUrl + "/good", second, sha1))).isSuccess());
+
+        assertEquals(1, requests.get());
+        assertTrue(store.has(sha1));
+        assertEquals("/good", new String(Files.readAllBytes(second.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Fetch an object once for concurrent tasks and count store lookups")
+    @Test
+    public void storeConcurrent() {
+        ArtifactStore store = new ArtifactStore(new File(tempDir, "objects"));
+        String sha1 = "f11416f6ccb2ee1893bcd1897725e3c99ce017c7";
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            tasks.add(new DownloadTask(baseUrl + "/good", new File(tempDir, i + "/good.jar"), sha1));
+        }
+        tasks.add(new DownloadTask(baseUrl + "/missing", new File(tempDir, "missing"))); // no sha1, not a lookup
+
+        MetricsRegistry metrics = new MetricsRegistry();
+        Metrics.addListener(metrics);
+        DownloadResult result;
+        try {
+            result = new DownloadEngine(6, 6, 64 * 1024).setStore(store).download(tasks);
+        } finally {
+            Metrics.removeListener(metrics);
+        }
+
+        assertEquals(1, result.getFailures().size());
+        assertEquals(1, metrics.getCount(Metrics.COUNTER_STORE_MISS));
+        assertEquals(5, metrics.getCount(Metrics.COUNTER_STORE_HIT));
+        assertEquals(2, requests.get());
+        for (int i = 0; i < 6; i++) {
+            assertTrue(new File(tempDir, i + "/good.jar").isFile());
+        }
+    }
+
+    @DisplayName("Report file events and progress")
+    @Test
+    public void progress() {
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(new DownloadTask(baseUrl + "/file" + i, new File(tempDir, "file" + i)));
+        }
+        tasks.add(new DownloadTask(baseUrl + "/missing", new File(tempDir, "missing")));
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<DownloadProgress> last = new AtomicReference<>();
+
+        new DownloadEngine(4, 4, 64 * 1024).setProgressInterval(10).setProgressListener(new ProgressListener() {
+            @Override
+            public void onFileStart(@NotNull DownloadTask task) {
+                started.incrementAndGet();
+            }
+
+            @Override
+            public void onFileFinish(@NotNull DownloadTask task, @Nullable Throwable error) {
+                if (error != null) {
+                    failed.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onProgress(@NotNull DownloadProgress progress) {
+                last.set(progress);
+            }
+        }).download(tasks);
+
+        DownloadProgress progress = last.get();
+        assertEquals(11, started.get());
+        assertEquals(1, failed.get());
+        assertTrue(progress.finished);
+        assertEquals(11, progress.filesDone);
+        assertEquals(1, progress.filesFailed);
+        assertEquals(60, progress.bytesDone); // "/fileN" * 10
+        assertEquals(60, progress.bytesTotal);
+        assertEquals(0, progress.getEtaMillis());
+    }
+
+    @DisplayName("Don't count the bytes of a retry that starts over")
+    @Test
+    public void progressRestart() {
+        AtomicReference<DownloadProgress> last = new AtomicReference<>();
+        DownloadResult result = new DownloadEngine(1, 1, 64 * 1024)
+                .setRetryPolicy(new RetryPolicy(3, 1, 10, 0.5))
+                .setProgressListener(new ProgressListener() {
+                    @Override
+                    public void onProgress(@NotNull DownloadProgress progress) {
+                        last.set(progress);
+                    }
+                })
+                .download(Collections.singletonList(new DownloadTask(baseUrl + "/restart", new File(tempDir, "restart"))));
+
+        assertTrue(result.isSuccess());
+        assertEquals(2, restarts.get());
+        assertEquals(100, last.get().bytesDone);
+        assertEquals(100, last.get().bytesTotal);
+    }
+
+    @DisplayName("Wait for the in-flight budget before sending the request")
+    @Test
+    public void budgetBeforeRequest() {
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new DownloadTask(baseUrl + "/slow" + i, new File(tempDir, "slow" + i), null, 1024));
+        }
+
+        DownloadResult result = new DownloadEngine(3, 3, 1024).download(tasks);
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, maxActive.get());
+    }
+
+    @DisplayName("Start files needed to launch first")
+    @Test
+    public void priority() {
+        List<DownloadTask> tasks = new ArrayList<>();
+        tasks.add(new DownloadTask(baseUrl + "/texture", new File(tempDir, "texture"), null, -1, DownloadTask.PRIORITY_BACKGROUND));
+        tasks.add(new DownloadTask(baseUrl + "/external", new File(tempDir, "external")));
+        tasks.add(new DownloadTask(baseUrl + "/classpath", new File(tempDir, "classpath"), null, -1, DownloadTask.PRIORITY_LAUNCH));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        new DownloadEngine(1, 1, 64 * 1024).setProgressListener(new ProgressListener() {
+            @Override
+            public void onFileStart(@NotNull DownloadTask task) {
+                order.add(task.file.getName());
+            }
+        }).download(tasks);
+
+        assertEquals(Arrays.asList("classpath", "external", "texture"), order);
+    }
+}
@@ -0,0 +1,61 @@
+package org.cubewhy.lunarcn;
+
+import org.cubewhy.launcher.utils.FileHasher;
+import org.cubewhy.launcher.utils.StringUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("File hasher")
+public class TestFileHasher {
+    @TempDir
+    File tempDir;
+
+    @DisplayName("Hash a batch like single files")
+    @Test
+    public void batch() throws Exception {
+        Random random = new Random(42);
+        List<File> files = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        // more files than one batch task takes, sizes from empty to bigger than the read buffer
+        for (int i = 0; i < 40; i++) {
+            byte[] content = new byte[i == 0 ? 0 : random.nextInt(600 * 1024)];
+            random.nextBytes(content);
+            File file = new File(tempDir, "file" + i);
+            Files.write(file.toPath(), content);
+            files.add(file);
+            expected.add(StringUtils.toHex(MessageDigest.getInstance("SHA-1").digest(content)));
+        }
+        File missing = new File(tempDir, "missing");
+        files.add(missing);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        FileHasher.BatchResult result;
+        try {
+            result = FileHasher.sha1All(files, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.getErrors().containsKey(missing));
+        assertEquals(40, result.getHashes().size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(expected.get(i), result.getHashes().get(files.get(i)));
+            assertEquals(expected.get(i), FileHasher.sha1(files.get(i)));
+        }
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", FileHasher.sha1(files.get(0)));
+        assertThrows(IOException.class, () -> FileHasher.sha1(missing));
+    }
+}
@@ -0,0 +1,95 @@
+package org.cubewhy.lunarcn;
+
+import org.cubewhy.launcher.process.GameProcess;
+import org.cubewhy.launcher.process.LineListener;
+import org.cubewhy.launcher.process.LogBuffer;
+import org.cubewhy.launcher.process.OutputPump;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+@DisplayName("Game process output")
+public class TestGameProcess {
+    @TempDir
+    File tempDir;
+
+    @DisplayName("Keep the last lines of the output")
+    @Test
+    public void logBuffer() {
+        LogBuffer buffer = new LogBuffer(3);
+        buffer.add("a");
+        buffer.add("b");
+        assertEquals(Arrays.asList("a", "b"), buffer.getLines());
+
+        for (String line : new String[]{"c", "d", "e", "f", "g"}) {
+            buffer.add(line);
+        }
+        assertEquals(Arrays.asList("e", "f", "g"), buffer.getLines());
+        assertEquals(7, buffer.getCount());
+        assertThrows(IllegalArgumentException.class, () -> new LogBuffer(0));
+    }
+
+    @DisplayName("Dispatch every line to the buffer, the sink and the listeners")
+    @Test
+    public void pump() {
+        LogBuffer buffer = new LogBuffer(10);
+        StringWriter sink = new StringWriter();
+        List<String> seen = new ArrayList<>();
+        List<LineListener> listeners = new CopyOnWriteArrayList<>();
+        listeners.add((line, error) -> {
+            throw new IllegalStateException("broken listener");
+        });
+        listeners.add((line, error) -> seen.add((error ? "err:" : "out:") + line));
+        AtomicInteger ended = new AtomicInteger();
+
+        new OutputPump(new ByteArrayInputStream("one\ntwo\r\nthree".getBytes(StandardCharsets.UTF_8)), true,
+                buffer, listeners, sink, StandardCharsets.UTF_8, ended::incrementAndGet).run();
+
+        assertEquals(Arrays.asList("one", "two", "three"), buffer.getLines());
+        assertEquals(Arrays.asList("err:one", "err:two", "err:three"), seen);
+        assertEquals(String.join(System.lineSeparator(), "one", "two", "three") + System.lineSeparator(), sink.toString());
+        assertEquals(1, ended.get());
+    }
+
+    @DisplayName("Close the log file when the output ends")
+    @Test
+    public void logFile() throws IOException, InterruptedException {
+        assumeFalse(System.getProperty("os.name").toLowerCase().contains("windows"));
+        File logFile = new File(tempDir, "logs/game.log");
+        GameProcess process = GameProcess.start(Arrays.asList("sh", "-c", "echo out; echo err >&2"), null, 10, logFile, null);
+        assertEquals(0, process.waitFor());
+
+        List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+        Collections.sort(lines);
+        assertEquals(Arrays.asList("err", "out"), lines);
+        assertEquals(2, process.getLog().getCount());
+    }
+
+    @DisplayName("Don't start the game when the log file can't be opened")
+    @Test
+    public void brokenLogFile() throws InterruptedException {
+        assumeFalse(System.getProperty("os.name").toLowerCase().contains("windows"));
+        File marker = new File(tempDir, "started");
+        File logFile = new File(tempDir, "logs");
+        assertTrue(logFile.mkdirs()); // a dir can't be opened as a file
+        assertThrows(IOException.class, () -> GameProcess.start(Arrays.asList("touch", marker.getPath()), null, 10, logFile, null));
+        Thread.sleep(200);
+        assertFalse(marker.exists());
+    }
+}
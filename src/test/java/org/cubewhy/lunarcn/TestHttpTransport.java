@@ -0,0 +1,130 @@
+package org.cubewhy.lunarcn;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import org.cubewhy.launcher.utils.HttpTransport;
+import org.cubewhy.launcher.utils.HttpUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("HTTP transport")
+public class TestHttpTransport {
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<String> acceptEncoding = new AtomicReference<>();
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            byte[] body = "{\"latest\":{}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        HttpUtils.configure(new HttpTransport());
+        server.stop(0);
+    }
+
+    @DisplayName("Serve cacheable responses from the disk cache")
+    @Test
+    public void diskCache() throws IOException {
+        OkHttpClient client = HttpUtils.configure(new HttpTransport().setCache(new File(tempDir, "http"), 1024 * 1024));
+        for (int i = 0; i < 3; i++) {
+            try (Response response = HttpUtils.get(baseUrl + "/version_manifest_v2.json").execute()) {
+                assertEquals("{\"latest\":{}}", response.body().string());
+            }
+        }
+        assertEquals(1, requests.get());
+        assertSame(client, HttpUtils.getHttpClient());
+
+        // downloads skip the cache
+        File file = new File(tempDir, "file.json");
+        HttpUtils.download(baseUrl + "/file.json", file, null);
+        HttpUtils.download(baseUrl + "/file.json", file, null);
+        assertEquals(3, requests.get());
+    }
+
+    @DisplayName("Keep the cache when rebuilding with the same dir")
+    @Test
+    public void reuseCache() {
+        File dir = new File(tempDir, "http");
+        OkHttpClient first = HttpUtils.configure(new HttpTransport().setCache(dir, 1024 * 1024));
+        OkHttpClient second = HttpUtils.configure(new HttpTransport().setCache(dir, 1024 * 1024).setHttp2(false));
+        assertNotSame(first, second);
+        assertSame(first.cache(), second.cache());
+        assertEquals(1, second.protocols().size());
+    }
+
+    @DisplayName("Disable compression")
+    @Test
+    public void compression() throws IOException {
+        HttpUtils.get(baseUrl + "/a").execute().close();
+        assertEquals("gzip", acceptEncoding.get());
+        HttpUtils.configure(new HttpTransport().setCompression(false));
+        HttpUtils.get(baseUrl + "/b").execute().close();
+        assertEquals("identity", acceptEncoding.get());
+    }
+
+    @DisplayName("Finish running calls when the client is replaced")
+    @Test
+    public void configureWhileRunning() throws Exception {
+        OkHttpClient old = HttpUtils.configure(new HttpTransport().setCache(new File(tempDir, "old"), 1024 * 1024));
+        Cache oldCache = old.cache();
+        CompletableFuture<String> call = CompletableFuture.supplyAsync(() -> {
+            try (Response response = HttpUtils.get(baseUrl + "/slow").execute()) {
+                return response.body().string();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Thread.sleep(100); // the call is waiting for the server
+        HttpUtils.configure(new HttpTransport().setCache(new File(tempDir, "new"), 1024 * 1024));
+        assertFalse(oldCache.isClosed());
+
+        assertEquals("{\"latest\":{}}", call.get(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!oldCache.isClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(oldCache.isClosed());
+    }
+}
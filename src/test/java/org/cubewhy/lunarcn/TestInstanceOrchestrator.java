@@ -0,0 +1,96 @@
+package org.cubewhy.lunarcn;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.cubewhy.launcher.GameInstance;
+import org.cubewhy.launcher.InstanceOrchestrator;
+import org.cubewhy.launcher.InstanceSpec;
+import org.cubewhy.launcher.LaunchProfile;
+import org.cubewhy.launcher.game.MinecraftArgs;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+@DisplayName("Instance orchestrator")
+public class TestInstanceOrchestrator {
+    @TempDir
+    File tempDir;
+
+    @DisplayName("Limit concurrent cold starts and track exits")
+    @Test
+    public void coldStarts() throws IOException, InterruptedException {
+        assumeFalse(System.getProperty("os.name").toLowerCase().contains("windows"));
+        // stands in for java: loads, prints the ready line, plays a bit, exits
+        File java = new File(tempDir, "java.sh");
+        Files.write(java.toPath(), "#!/bin/sh\nsleep 0.2\necho 'Sound engine started'\nsleep 0.3\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(java.setExecutable(true));
+
+        AtomicInteger starting = new AtomicInteger();
+        AtomicInteger maxStarting = new AtomicInteger();
+        AtomicInteger minStarting = new AtomicInteger();
+        Map<String, List<GameInstance.State>> states = new ConcurrentHashMap<>();
+        InstanceOrchestrator orchestrator = new InstanceOrchestrator("1.8.9", "master", "lunar", tempDir.getPath(), java.getPath())
+                .setProfile(profile())
+                .setVerify(false)
+                .setMaxColdStarts(2)
+                .setListener((instance, state) -> {
+                    states.computeIfAbsent(instance.spec.id, id -> Collections.synchronizedList(new ArrayList<>())).add(state);
+                    if (state == GameInstance.State.STARTING) {
+                        maxStarting.accumulateAndGet(starting.incrementAndGet(), Math::max);
+                    } else if (state == GameInstance.State.RUNNING) {
+                        minStarting.accumulateAndGet(starting.decrementAndGet(), Math::min);
+                    }
+                });
+        List<InstanceSpec> specs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            specs.add(new InstanceSpec("bot" + i, new MinecraftArgs(tempDir.getPath(), tempDir.getPath(), 854, 480)));
+        }
+
+        List<GameInstance> instances = orchestrator.launchAll(specs);
+
+        assertTrue(orchestrator.awaitAllStarted(20, TimeUnit.SECONDS));
+        for (GameInstance instance : instances) {
+            assertTrue(instance.awaitExit(20, TimeUnit.SECONDS));
+            assertEquals(GameInstance.State.EXITED, instance.getState());
+            assertEquals(0, instance.getExitCode());
+            assertTrue(instance.getStartMillis() >= 0);
+            assertEquals(Arrays.asList(GameInstance.State.QUEUED, GameInstance.State.STARTING, GameInstance.State.RUNNING, GameInstance.State.EXITED),
+                    states.get(instance.spec.id));
+        }
+        assertTrue(maxStarting.get() <= 2, "cold starts: " + maxStarting.get());
+        assertEquals(0, minStarting.get());
+        assertEquals(0, orchestrator.getColdStarting());
+        assertThrows(IllegalStateException.class, () -> orchestrator.setMaxColdStarts(4));
+
+        orchestrator.close();
+        assertThrows(IllegalStateException.class, () -> orchestrator.launch(new InstanceSpec("late", new MinecraftArgs(tempDir.getPath(), tempDir.getPath(), 854, 480))));
+    }
+
+    private static LaunchProfile profile() {
+        JsonObject jre = new JsonObject();
+        jre.add("extraArguments", new JsonArray());
+        JsonObject launchTypeData = new JsonObject();
+        launchTypeData.add("artifacts", new JsonArray());
+        launchTypeData.addProperty("mainClass", "com.moonsworth.lunar.genesis.Genesis");
+        JsonObject versionJson = new JsonObject();
+        versionJson.add("jre", jre);
+        versionJson.add("launchTypeData", launchTypeData);
+        return LaunchProfile.fromVersionJson("1.8.9", "master", "lunar", versionJson);
+    }
+}
@@ -0,0 +1,119 @@
+package org.cubewhy.lunarcn;
+
+import org.cubewhy.launcher.download.DownloadResult;
+import org.cubewhy.launcher.download.DownloadTask;
+import org.cubewhy.launcher.download.IntegrityManifest;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Integrity manifest")
+public class TestIntegrityManifest {
+    // sha1 of "a", "b" and "c"
+    private static final String SHA1_A = "86f7e437faa5a7fce15d1ddcb9eaeaea377667b8";
+    private static final String SHA1_B = "e9d71f5ee7c92d6dc9e92ffdad17b8bd49418f98";
+    private static final String SHA1_C = "84a516841ba77a5b4648de2cd0dfcb30ea46dbb4";
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    public void addMetrics() {
+        Metrics.addListener(metrics);
+    }
+
+    @AfterEach
+    public void removeMetrics() {
+        Metrics.removeListener(metrics);
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(tempDir, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private long hashed() {
+        return metrics.getCount(Metrics.COUNTER_FILES_HASHED);
+    }
+
+    @DisplayName("Hash changed files once, answer later checks from the manifest")
+    @Test
+    public void refreshAndVerify() throws IOException {
+        List<File> files = Arrays.asList(write("a.jar", "a"), write("libs/b.jar", "b"));
+        IntegrityManifest manifest = IntegrityManifest.load(tempDir);
+        manifest.refresh(files);
+        assertEquals(2, hashed());
+
+        manifest.refresh(files);
+        assertTrue(manifest.verify(files.get(0), SHA1_A));
+        assertTrue(manifest.verify(files.get(1), SHA1_B.toUpperCase()));
+        assertFalse(manifest.verify(files.get(1), SHA1_A));
+        assertFalse(manifest.verify(new File(tempDir, "missing.jar"), SHA1_A));
+        assertEquals(2, hashed());
+
+        manifest.save();
+        IntegrityManifest loaded = IntegrityManifest.load(tempDir);
+        assertTrue(loaded.verify(files.get(0), SHA1_A));
+        assertTrue(loaded.verify(files.get(1), SHA1_B));
+        assertEquals(2, hashed());
+    }
+
+    @DisplayName("Hash a file again when its mtime changed")
+    @Test
+    public void changedMtime() throws IOException {
+        File file = write("a.jar", "a");
+        IntegrityManifest manifest = IntegrityManifest.load(tempDir);
+        assertEquals(SHA1_A, manifest.sha1(file));
+
+        write("a.jar", "c"); // same size
+        assertTrue(file.setLastModified(file.lastModified() + 5000));
+        assertEquals(SHA1_C, manifest.sha1(file));
+        assertEquals(2, hashed());
+    }
+
+    @DisplayName("Record the downloaded files, not the failed ones")
+    @Test
+    public void recordAll() throws IOException {
+        File a = write("a.jar", "a");
+        File b = write("b.jar", "b");
+        DownloadTask okTask = new DownloadTask("http://127.0.0.1/a.jar", a, SHA1_A);
+        DownloadTask failedTask = new DownloadTask("http://127.0.0.1/b.jar", b, SHA1_B);
+        IntegrityManifest manifest = IntegrityManifest.load(tempDir);
+        manifest.recordAll(Arrays.asList(okTask, failedTask),
+                new DownloadResult(2, new HashMap<>(Collections.singletonMap(failedTask, new IOException("failed")))));
+
+        assertTrue(manifest.verify(a, SHA1_A));
+        assertEquals(0, hashed());
+        assertTrue(manifest.verify(b, SHA1_B));
+        assertEquals(1, hashed());
+    }
+
+    @DisplayName("Treat a broken manifest as empty")
+    @Test
+    public void broken() throws IOException {
+        File file = write("a.jar", "a");
+        write(IntegrityManifest.FILE_NAME, "{broken");
+        IntegrityManifest manifest = IntegrityManifest.load(tempDir);
+        assertTrue(manifest.verify(file, SHA1_A));
+        assertEquals(1, hashed());
+    }
+}
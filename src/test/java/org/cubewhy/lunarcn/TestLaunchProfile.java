@@ -0,0 +1,87 @@
+package org.cubewhy.lunarcn;
+
+import com.google.gson.JsonParser;
+import org.cubewhy.launcher.LaunchProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Launch profile")
+public class TestLaunchProfile {
+    @TempDir
+    File tempDir;
+
+    @AfterEach
+    public void restore() {
+        LaunchProfile.setProfilesDir(LaunchProfile.profilesDir);
+    }
+
+    private static LaunchProfile profile() {
+        return new LaunchProfile("1.8.9", "master", "forge", Arrays.asList("-Xss2M", "-Dichor.prebakeClasses=true"),
+                Arrays.asList("lunar-lang.jar", "lunar-prod-optifine.jar"), Collections.singletonList("OptiFine_v1_8.jar"),
+                "natives-windows-x64.zip", "com.moonsworth.lunar.genesis.Genesis", true, System.currentTimeMillis());
+    }
+
+    @DisplayName("Build a profile from the launch API response")
+    @Test
+    public void fromVersionJson() {
+        LaunchProfile profile = LaunchProfile.fromVersionJson("1.8.9", "master", "forge", JsonParser.parseString("{"
+                + "\"jre\":{\"extraArguments\":[\"-Xss2M\"]},"
+                + "\"launchTypeData\":{\"mainClass\":\"com.moonsworth.lunar.genesis.Genesis\",\"ichor\":false,\"artifacts\":["
+                + "{\"name\":\"lunar-lang.jar\",\"type\":\"CLASS_PATH\"},"
+                + "{\"name\":\"OptiFine_v1_8.jar\",\"type\":\"EXTERNAL_FILE\"},"
+                + "{\"name\":\"natives-windows-x64.zip\",\"type\":\"NATIVES\"}]}}").getAsJsonObject());
+
+        assertEquals(Collections.singletonList("-Xss2M"), profile.jvmArgs);
+        assertEquals(Collections.singletonList("lunar-lang.jar"), profile.classpath);
+        assertEquals(Collections.singletonList("OptiFine_v1_8.jar"), profile.externalFiles);
+        assertEquals("natives-windows-x64.zip", profile.nativesZip);
+        assertEquals("com.moonsworth.lunar.genesis.Genesis", profile.mainClass);
+        assertFalse(profile.ichor);
+    }
+
+    @DisplayName("Save a profile and use it without the network")
+    @Test
+    public void roundTrip() throws IOException {
+        LaunchProfile.setProfilesDir(tempDir);
+        LaunchProfile profile = profile();
+        profile.save();
+
+        File file = new File(tempDir, "1.8.9-master-forge.json");
+        assertArrayEquals(new String[]{file.getName()}, tempDir.list()); // no temp file left
+        assertEquals(profile.toJson(), LaunchProfile.load(file).toJson());
+
+        LaunchProfile.setProfilesDir(tempDir); // drop the profiles in memory
+        LaunchProfile loaded = LaunchProfile.get("1.8.9", "master", "forge");
+        assertEquals(profile.toJson(), loaded.toJson());
+        assertSame(loaded, LaunchProfile.get("1.8.9", "master", "forge"));
+    }
+
+    @DisplayName("Ignore a truncated or corrupt profile")
+    @Test
+    public void corrupt() throws IOException {
+        File file = new File(tempDir, "profile.json");
+        String json = profile().toJson().toString();
+
+        Files.write(file.toPath(), json.substring(0, json.length() / 2).getBytes(StandardCharsets.UTF_8));
+        assertNull(LaunchProfile.load(file));
+        Files.write(file.toPath(), "[]".getBytes(StandardCharsets.UTF_8));
+        assertNull(LaunchProfile.load(file));
+        Files.write(file.toPath(), "{\"version\":\"1.8.9\"}".getBytes(StandardCharsets.UTF_8));
+        assertNull(LaunchProfile.load(file));
+        assertNull(LaunchProfile.load(new File(tempDir, "missing.json")));
+
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        assertNotNull(LaunchProfile.load(file));
+    }
+}
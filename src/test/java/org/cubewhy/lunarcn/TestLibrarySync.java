@@ -0,0 +1,70 @@
+package org.cubewhy.lunarcn;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.cubewhy.launcher.game.LibrarySync;
+import org.cubewhy.launcher.utils.OsUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Library sync")
+public class TestLibrarySync {
+    private static final String OTHER_OS = OsUtils.getOsName().equals("windows") ? "osx" : "windows";
+
+    private static JsonArray rules(String json) {
+        return JsonParser.parseString(json).getAsJsonArray();
+    }
+
+    private static String artifact(String path) {
+        return "{\"path\":\"" + path + "\",\"sha1\":\"0000000000000000000000000000000000000000\",\"size\":1,\"url\":\"https://libraries.minecraft.net/" + path + "\"}";
+    }
+
+    @DisplayName("Apply library rules, the last matched rule wins")
+    @Test
+    public void rules() {
+        String os = OsUtils.getOsName();
+        assertTrue(LibrarySync.isAllowed(null));
+        assertTrue(LibrarySync.isAllowed(new JsonArray()));
+        assertTrue(LibrarySync.isAllowed(rules("[{\"action\":\"allow\"}]")));
+        assertFalse(LibrarySync.isAllowed(rules("[{\"action\":\"allow\",\"os\":{\"name\":\"" + OTHER_OS + "\"}}]")));
+        assertTrue(LibrarySync.isAllowed(rules("[{\"action\":\"allow\",\"os\":{\"name\":\"" + os + "\"}}]")));
+        assertFalse(LibrarySync.isAllowed(rules("[{\"action\":\"allow\"},{\"action\":\"disallow\",\"os\":{\"name\":\"" + os + "\"}}]")));
+        assertTrue(LibrarySync.isAllowed(rules("[{\"action\":\"allow\"},{\"action\":\"disallow\",\"os\":{\"name\":\"" + OTHER_OS + "\"}}]")));
+        assertTrue(LibrarySync.isAllowed(rules("[{\"action\":\"allow\"},{\"action\":\"disallow\",\"features\":{\"is_demo_user\":true}}]")));
+        assertFalse(LibrarySync.isAllowed(rules("[{\"action\":\"allow\",\"os\":{\"name\":\"" + os + "\",\"version\":\"^no-such-version$\"}}]")));
+    }
+
+    @DisplayName("Pick the artifacts and natives of this OS")
+    @Test
+    public void artifacts() {
+        String os = OsUtils.getOsName();
+        String nativesKey = "natives-" + os + "-" + OsUtils.getBits();
+        JsonObject versionJson = JsonParser.parseString("{\"libraries\":["
+                + "{\"name\":\"com.mojang:netty:1.6\",\"downloads\":{\"artifact\":" + artifact("com/mojang/netty/netty-1.6.jar") + "}},"
+                // natives only, the classifier of this OS with ${arch} replaced
+                + "{\"name\":\"org.lwjgl.lwjgl:lwjgl-platform:2.9.4\",\"natives\":{\"" + os + "\":\"natives-" + os + "-${arch}\"},"
+                + "\"downloads\":{\"classifiers\":{"
+                + "\"" + nativesKey + "\":" + artifact("org/lwjgl/lwjgl-platform-" + nativesKey + ".jar") + ","
+                + "\"natives-" + OTHER_OS + "\":" + artifact("org/lwjgl/lwjgl-platform-natives-" + OTHER_OS + ".jar") + "}}},"
+                + "{\"name\":\"ca.weblite:java-objc-bridge:1.0.0\",\"rules\":[{\"action\":\"allow\",\"os\":{\"name\":\"" + OTHER_OS + "\"}}],"
+                + "\"downloads\":{\"artifact\":" + artifact("ca/weblite/java-objc-bridge-1.0.0.jar") + "}},"
+                // listed twice, kept once
+                + "{\"name\":\"com.mojang:netty:1.6\",\"downloads\":{\"artifact\":" + artifact("com/mojang/netty/netty-1.6.jar") + "}},"
+                + "{\"name\":\"net.minecraft:launchwrapper:1.12\"}"
+                + "]}").getAsJsonObject();
+
+        Map<String, JsonObject> artifacts = LibrarySync.getArtifacts(versionJson);
+
+        assertEquals(Arrays.asList("com/mojang/netty/netty-1.6.jar", "org/lwjgl/lwjgl-platform-" + nativesKey + ".jar"),
+                new ArrayList<>(artifacts.keySet()));
+        assertEquals("https://libraries.minecraft.net/org/lwjgl/lwjgl-platform-" + nativesKey + ".jar",
+                artifacts.get("org/lwjgl/lwjgl-platform-" + nativesKey + ".jar").get("url").getAsString());
+    }
+}
@@ -0,0 +1,105 @@
+package org.cubewhy.lunarcn;
+
+import com.google.gson.JsonObject;
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.metrics.MetricsListener;
+import org.cubewhy.server.LoginService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Login service")
+public class TestLoginService {
+    @DisplayName("Route links to their instance")
+    @Test
+    public void route() {
+        LoginService service = new LoginService(0);
+        service.addAccount("shared");
+        service.addAccount("a", "link-a");
+        service.addAccounts("b", Arrays.asList("link-b1", "link-b2"));
+
+        assertEquals("link-a", service.handleRequest("open-window", payload("a")).get("url"));
+        assertEquals("shared", service.handleRequest("open-window", payload("a")).get("url")); // falls back to the shared links
+        assertEquals("link-b1", service.handleRequest("open-window", payload("b")).get("url"));
+        assertEquals("link-b2", service.handleRequest("open-window", payload("b").toString()).get("url"));
+        assertEquals("CLOSED_WITH_NO_URL", service.handleRequest("open-window", null).get("status"));
+        assertEquals(5, service.getRequestCount());
+        assertEquals(1, service.getEmptyCount());
+    }
+
+    @DisplayName("Hand every link out once under concurrent requests")
+    @Test
+    public void concurrent() throws Exception {
+        LoginService service = new LoginService(0);
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            links.add("link" + i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Set<String> served = ConcurrentHashMap.newKeySet();
+        try {
+            Future<?> producer = executor.submit(() -> {
+                for (int i = 0; i < links.size(); i += 100) {
+                    service.addAccounts(links.subList(i, i + 100));
+                }
+            });
+            List<Future<?>> consumers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                consumers.add(executor.submit(() -> {
+                    while (served.size() < links.size()) {
+                        String url = service.handleRequest("open-window", null).get("url");
+                        if (url != null) {
+                            assertTrue(served.add(url), "served twice: " + url);
+                        }
+                    }
+                }));
+            }
+            producer.get(10, TimeUnit.SECONDS);
+            for (Future<?> consumer : consumers) {
+                consumer.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(new HashSet<>(links), served);
+        assertEquals(links.size(), service.getMatchedCount());
+    }
+
+    @DisplayName("Time requests and the wait of an instance for its link")
+    @Test
+    public void metrics() throws Exception {
+        LoginService service = new LoginService(0);
+        List<String> phases = new CopyOnWriteArrayList<>();
+        List<Long> waits = new CopyOnWriteArrayList<>();
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onPhase(String phase, long nanos, boolean success) {
+                phases.add(phase);
+                if (phase.equals(Metrics.PHASE_LOGIN_WAIT)) {
+                    waits.add(nanos);
+                }
+            }
+        };
+        Metrics.addListener(listener);
+        try {
+            service.handleRequest("open-window", payload("a")); // nothing queued yet
+            Thread.sleep(20);
+            service.addAccount("a", "link-a");
+            service.handleRequest("open-window", payload("a"));
+        } finally {
+            Metrics.removeListener(listener);
+        }
+        assertEquals(Arrays.asList(Metrics.PHASE_LOGIN, Metrics.PHASE_LOGIN_WAIT, Metrics.PHASE_LOGIN), phases);
+        assertTrue(waits.get(0) >= TimeUnit.MILLISECONDS.toNanos(20), String.valueOf(waits.get(0)));
+    }
+
+    private static JsonObject payload(String instance) {
+        JsonObject json = new JsonObject();
+        json.addProperty("instance", instance);
+        return json;
+    }
+}
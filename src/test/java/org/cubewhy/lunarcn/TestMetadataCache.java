@@ -0,0 +1,107 @@
+package org.cubewhy.lunarcn;
+
+import com.google.gson.JsonElement;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Request;
+import org.cubewhy.launcher.cache.MetadataCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Metadata cache")
+public class TestMetadataCache {
+    private HttpServer server;
+    private Request request;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/metadata", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses.incrementAndGet();
+            try {
+                Thread.sleep(200); // slow API
+            } catch (InterruptedException ignored) {
+            }
+            byte[] body = "{\"versions\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        request = new Request.Builder().url("http://127.0.0.1:" + server.getAddress().getPort() + "/metadata").build();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @DisplayName("Serve fresh entries from memory")
+    @Test
+    public void memoize() throws IOException {
+        MetadataCache cache = new MetadataCache(tempDir, 60_000);
+        JsonElement first = cache.get(request);
+        first.getAsJsonObject().addProperty("changed", true);
+        JsonElement second = cache.get(request);
+        assertEquals(1, fullResponses.get());
+        assertFalse(second.getAsJsonObject().has("changed"));
+    }
+
+    @DisplayName("Revalidate stale entries from disk")
+    @Test
+    public void revalidate() throws IOException {
+        new MetadataCache(tempDir, 60_000).get(request);
+        JsonElement json = new MetadataCache(tempDir, 0).get(request);
+        assertEquals(1, fullResponses.get());
+        assertEquals(1, notModified.get());
+        assertTrue(json.getAsJsonObject().has("versions"));
+    }
+
+    @DisplayName("Share one request between concurrent callers")
+    @Test
+    public void coalesce() throws Exception {
+        MetadataCache cache = new MetadataCache(tempDir, 60_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JsonElement>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> cache.get(request)));
+            }
+            for (Future<JsonElement> future : futures) {
+                assertTrue(future.get().getAsJsonObject().has("versions"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, fullResponses.get());
+    }
+}
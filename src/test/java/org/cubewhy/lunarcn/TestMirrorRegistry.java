@@ -0,0 +1,163 @@
+package org.cubewhy.lunarcn;
+
+import com.sun.net.httpserver.HttpServer;
+import org.cubewhy.launcher.download.*;
+import org.cubewhy.launcher.utils.RetryPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Mirror registry")
+public class TestMirrorRegistry {
+    private static final String CATEGORY = "test";
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @TempDir
+    File tempDir;
+
+    @AfterEach
+    public void stopServers() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Start a mirror serving every path as its own content
+     *
+     * @param delayMillis delay before every response
+     * @param healthyFor  requests served before answering 503 (-1 for always healthy)
+     * @param corrupt     serve wrong content
+     * @param requests    count of requests
+     * @return base url
+     */
+    private String startMirror(long delayMillis, int healthyFor, boolean corrupt, AtomicInteger requests) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            int n = requests.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException ignored) {
+            }
+            if (healthyFor >= 0 && n > healthyFor) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = ((corrupt ? "corrupt" : "") + exchange.getRequestURI().getPath()).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/mirror/";
+    }
+
+    @DisplayName("Route to the fastest mirror after probing")
+    @Test
+    public void probe() throws IOException {
+        String slow = startMirror(300, -1, false, new AtomicInteger());
+        String fast = startMirror(0, -1, false, new AtomicInteger());
+        MirrorRegistry registry = new MirrorRegistry();
+        registry.addMirror(CATEGORY, slow);
+        registry.addMirror(CATEGORY, fast);
+
+        assertEquals(slow + "a.jar", registry.resolve(slow + "a.jar").get(0)); // add order until measured
+        registry.probe(CATEGORY);
+
+        List<String> candidates = registry.resolve(slow + "a.jar");
+        assertEquals(2, candidates.size());
+        assertEquals(fast + "a.jar", candidates.get(0));
+        assertEquals(slow + "a.jar", candidates.get(1));
+        assertEquals(1, registry.resolve("http://127.0.0.1:1/other").size());
+    }
+
+    @DisplayName("Fail over in the middle of a sync")
+    @Test
+    public void failover() throws IOException {
+        AtomicInteger primaryRequests = new AtomicInteger();
+        AtomicInteger backupRequests = new AtomicInteger();
+        String primary = startMirror(0, 5, false, primaryRequests); // degrades after 5 files
+        String backup = startMirror(0, -1, false, backupRequests);
+        MirrorRegistry registry = new MirrorRegistry();
+        registry.addMirror(CATEGORY, primary);
+        registry.addMirror(CATEGORY, backup);
+        registry.setFailurePolicy(2, 60_000);
+
+        List<DownloadTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(new DownloadTask(primary + "file" + i, new File(tempDir, "file" + i)));
+        }
+        DownloadResult result = new DownloadEngine(1, 1, 64 * 1024)
+                .setMirrors(registry)
+                .setRetryPolicy(RetryPolicy.NONE)
+                .download(tasks);
+
+        assertTrue(result.isSuccess(), () -> result.getFailures().toString());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("/mirror/file" + i, new String(Files.readAllBytes(new File(tempDir, "file" + i).toPath()), StandardCharsets.UTF_8));
+        }
+        // 5 files, then at most 2 failures before it was skipped (or ranked after the backup)
+        assertTrue(primaryRequests.get() <= 7, "primary requests: " + primaryRequests.get());
+        assertEquals(15, backupRequests.get());
+        assertEquals(backup + "file0", registry.resolve(primary + "file0").get(0));
+    }
+
+    @DisplayName("Skip a mirror serving broken files")
+    @Test
+    public void integrity() throws IOException {
+        AtomicInteger brokenRequests = new AtomicInteger();
+        String broken = startMirror(0, -1, true, brokenRequests);
+        String good = startMirror(0, -1, false, new AtomicInteger());
+        MirrorRegistry registry = new MirrorRegistry();
+        registry.addMirror(CATEGORY, broken);
+        registry.addMirror(CATEGORY, good);
+
+        File file = new File(tempDir, "good");
+        DownloadResult result = new DownloadEngine().setMirrors(registry)
+                .download(Collections.singletonList(new DownloadTask(good + "good", file, "203a34b732155acd04abae3307fb54bcbbf3daa7")));
+
+        assertTrue(result.isSuccess());
+        assertEquals(1, brokenRequests.get());
+        assertEquals("/mirror/good", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @DisplayName("Measure the latency to the response, not the whole fetch")
+    @Test
+    public void latency() throws IOException {
+        String base = startMirror(200, -1, false, new AtomicInteger());
+        MirrorRegistry registry = new MirrorRegistry();
+        Mirror mirror = registry.addMirror(CATEGORY, base);
+
+        registry.execute(base + "a.jar", url -> url);
+        assertEquals(-1, mirror.getLatencyMillis());
+
+        String body = registry.get(base + "a.jar", response -> {
+            try {
+                Thread.sleep(500); // a slow consumer is not a slow mirror
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response.body().string();
+        });
+        assertEquals("/mirror/a.jar", body);
+        assertTrue(mirror.getLatencyMillis() >= 150 && mirror.getLatencyMillis() < 500, "latency: " + mirror.getLatencyMillis());
+    }
+}
@@ -0,0 +1,79 @@
+package org.cubewhy.lunarcn;
+
+import org.cubewhy.launcher.download.DownloadTask;
+import org.cubewhy.launcher.download.RateLimiter;
+import org.cubewhy.launcher.download.TransferBudget;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Rate limiter")
+public class TestRateLimiter {
+    @DisplayName("Limit the rate")
+    @Test
+    public void limit() throws InterruptedIOException {
+        RateLimiter limiter = new RateLimiter(1024 * 1024);
+        long start = System.nanoTime();
+        for (int i = 0; i < 16; i++) {
+            limiter.acquire(64 * 1024, DownloadTask.PRIORITY_NORMAL);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 800, "took " + elapsed + "ms");
+    }
+
+    @DisplayName("Change the rate at runtime")
+    @Test
+    public void changeRate() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1);
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.acquire(64 * 1024, DownloadTask.PRIORITY_BACKGROUND);
+                limiter.acquire(64 * 1024, DownloadTask.PRIORITY_BACKGROUND);
+            } catch (InterruptedIOException ignored) {
+            }
+        });
+        thread.start();
+        Thread.sleep(200);
+        assertTrue(thread.isAlive());
+        limiter.setRate(0); // unlimited
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+    }
+
+    @DisplayName("Hand out the in-flight budget by priority")
+    @Test
+    public void budgetPriority() throws InterruptedException {
+        TransferBudget budget = new TransferBudget(4);
+        budget.acquire(4, DownloadTask.PRIORITY_NORMAL);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int priority : new int[]{DownloadTask.PRIORITY_BACKGROUND, DownloadTask.PRIORITY_BACKGROUND, DownloadTask.PRIORITY_LAUNCH}) {
+            Thread thread = new Thread(() -> {
+                try {
+                    budget.acquire(4, priority);
+                    order.add(priority);
+                    Thread.sleep(20);
+                    budget.release(4);
+                } catch (InterruptedException ignored) {
+                }
+            });
+            thread.start();
+            threads.add(thread);
+            Thread.sleep(100); // queue them in this order
+        }
+        budget.release(4);
+        for (Thread thread : threads) {
+            thread.join(2000);
+        }
+        assertEquals(Arrays.asList(DownloadTask.PRIORITY_LAUNCH, DownloadTask.PRIORITY_BACKGROUND, DownloadTask.PRIORITY_BACKGROUND), order);
+        assertEquals(4, budget.getAvailable());
+    }
+}
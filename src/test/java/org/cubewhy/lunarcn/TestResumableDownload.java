@@ -0,0 +1,191 @@
+package org.cubewhy.lunarcn;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.cubewhy.launcher.utils.ChecksumMismatchException;
+import org.cubewhy.launcher.utils.HttpStatusException;
+import org.cubewhy.launcher.utils.HttpUtils;
+import org.cubewhy.launcher.utils.RetryPolicy;
+import org.cubewhy.launcher.utils.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Resumable downloads")
+public class TestResumableDownload {
+    private static final RetryPolicy FAST_RETRY = new RetryPolicy(5, 1, 10, 0.5);
+
+    private final byte[] content = new byte[300 * 1024];
+    private String sha1;
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    public void startServer() throws Exception {
+        new Random(42).nextBytes(content);
+        sha1 = StringUtils.toHex(MessageDigest.getInstance("SHA-1").digest(content));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // drops the connection in the middle of the first response
+        server.createContext("/flaky", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(String.valueOf(range));
+            exchange.getResponseHeaders().add("ETag", "\"content\"");
+            if (requests.incrementAndGet() == 1) {
+                exchange.sendResponseHeaders(200, content.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(content, 0, content.length / 3);
+                out.flush();
+                exchange.close(); // fewer bytes than announced, the client sees a broken stream
+                return;
+            }
+            long start = range == null ? 0 : Long.parseLong(range.substring(6, range.indexOf('-')));
+            send(exchange, start);
+        });
+        server.createContext("/ranged", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(String.valueOf(range));
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().add("ETag", "\"content\"");
+            send(exchange, range == null ? 0 : Long.parseLong(range.substring(6, range.indexOf('-'))));
+        });
+        server.createContext("/busy", exchange -> {
+            if (requests.incrementAndGet() < 3) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            send(exchange, 0);
+        });
+        server.createContext("/corrupt", exchange -> {
+            requests.incrementAndGet();
+            send(exchange, 0);
+        });
+        server.createContext("/missing", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void send(HttpExchange exchange, long start) throws IOException {
+        if (start > 0) {
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+            exchange.sendResponseHeaders(206, content.length - start);
+        } else {
+            exchange.sendResponseHeaders(200, content.length);
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content, (int) start, (int) (content.length - start));
+        }
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @DisplayName("Continue a dropped download with a Range request")
+    @Test
+    public void resume() throws IOException {
+        File target = new File(tempDir, "client.jar");
+        HttpUtils.download(baseUrl + "/flaky", target, sha1, FAST_RETRY, null);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertEquals(2, requests.get());
+        assertEquals("null", ranges.get(0));
+        assertTrue(ranges.get(1).startsWith("bytes=") && !ranges.get(1).equals("bytes=0-"), ranges.get(1));
+        assertFalse(new File(tempDir, "client.jar.part").exists());
+        assertFalse(new File(tempDir, "client.jar.part.meta").exists());
+    }
+
+    @DisplayName("Retry transient server errors")
+    @Test
+    public void retryTransient() throws IOException {
+        File target = new File(tempDir, "busy.jar");
+        HttpUtils.download(baseUrl + "/busy", target, sha1, FAST_RETRY, null);
+        assertEquals(3, requests.get());
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target.toPath())));
+    }
+
+    @DisplayName("Don't retry client errors")
+    @Test
+    public void noRetryOnNotFound() {
+        HttpStatusException e = assertThrows(HttpStatusException.class,
+                () -> HttpUtils.download(baseUrl + "/missing", new File(tempDir, "missing"), null, FAST_RETRY, null));
+        assertEquals(404, e.code);
+        assertEquals(1, requests.get());
+    }
+
+    @DisplayName("Don't retry a checksum mismatch")
+    @Test
+    public void noRetryOnMismatch() {
+        String wrong = "0000000000000000000000000000000000000000";
+        ChecksumMismatchException e = assertThrows(ChecksumMismatchException.class,
+                () -> HttpUtils.download(baseUrl + "/corrupt", new File(tempDir, "corrupt.jar"), wrong, FAST_RETRY, null));
+        assertEquals(sha1, e.actual);
+        assertEquals(1, requests.get());
+        assertFalse(new File(tempDir, "corrupt.jar").exists());
+    }
+
+    @DisplayName("Download a stale partial file again from scratch")
+    @Test
+    public void staleResume() throws IOException {
+        File target = new File(tempDir, "stale.jar");
+        Files.write(new File(tempDir, "stale.jar.part").toPath(), new byte[1000]);
+        Files.write(new File(tempDir, "stale.jar.part.meta").toPath(),
+                ("validator=\"content\"\nlength=" + content.length + "\n").getBytes());
+        HttpUtils.download(baseUrl + "/ranged", target, sha1, FAST_RETRY, null);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertEquals(Arrays.asList("bytes=1000-", "null"), ranges);
+        assertFalse(new File(tempDir, "stale.jar.part").exists());
+        assertFalse(new File(tempDir, "stale.jar.part.meta").exists());
+    }
+
+    @DisplayName("Concurrent downloads of the same file don't share the partial file")
+    @Test
+    public void concurrent() throws Exception {
+        File target = new File(tempDir, "shared.jar");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> HttpUtils.download(baseUrl + "/ranged", target, sha1, FAST_RETRY, null)));
+            }
+            for (Future<Long> future : futures) {
+                assertEquals(content.length, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertArrayEquals(new String[]{"shared.jar"}, tempDir.list());
+    }
+}
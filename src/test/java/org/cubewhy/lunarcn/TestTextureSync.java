@@ -0,0 +1,132 @@
+package org.cubewhy.lunarcn;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import org.cubewhy.launcher.LunarDownloader;
+import org.cubewhy.launcher.download.ArtifactStore;
+import org.cubewhy.launcher.download.DownloadEngine;
+import org.cubewhy.launcher.download.SyncStats;
+import org.cubewhy.launcher.download.TextureSync;
+import org.cubewhy.launcher.utils.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Texture sync")
+public class TestTextureSync {
+    private static final byte[] GOOD = "good texture".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CHANGED = "changed texture".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MISSING = "missing texture".getBytes(StandardCharsets.UTF_8);
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String baseUrl;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file/", exchange -> {
+            String name = exchange.getRequestURI().getPath().substring("/file/".length());
+            requests.add(name);
+            byte[] body = name.equals("good.png") ? GOOD : name.equals("changed.png") ? CHANGED
+                    : name.equals("missing.png") ? MISSING : null;
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/file/";
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static String sha1(byte[] bytes) throws NoSuchAlgorithmException {
+        return StringUtils.toHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+    }
+
+    private JsonObject index() throws Exception {
+        String lines = "good.png " + sha1(GOOD) + "\n"
+                + "changed.png " + sha1(CHANGED) + "\n"
+                + "missing.png " + sha1(MISSING) + "\n"
+                + "\n"
+                + "gone.png " + sha1("gone texture".getBytes(StandardCharsets.UTF_8)) + "\n";
+        return LunarDownloader.parseLunarTexturesIndex(baseUrl, new StringReader(lines));
+    }
+
+    private TextureSync textureSync() {
+        return new TextureSync(new DownloadEngine(4, 4, 64 * 1024).setStore(new ArtifactStore(new File(tempDir, "objects"))));
+    }
+
+    @DisplayName("Skip verified textures, download changed and missing ones, report failures")
+    @Test
+    public void sync() throws Exception {
+        File textures = new File(tempDir, "textures");
+        textures.mkdirs();
+        Files.write(new File(textures, "good.png").toPath(), GOOD);
+        Files.write(new File(textures, "changed.png").toPath(), "old texture".getBytes(StandardCharsets.UTF_8));
+
+        SyncStats stats = textureSync().sync(textures, index(), true);
+
+        assertEquals(4, stats.files);
+        assertEquals(1, stats.skipped);
+        assertEquals(2, stats.fetched);
+        assertEquals(1, stats.failed);
+        assertFalse(stats.isSuccess());
+        assertEquals(new HashSet<>(Arrays.asList("changed.png", "missing.png", "gone.png")), new HashSet<>(requests));
+        assertArrayEquals(CHANGED, Files.readAllBytes(new File(textures, "changed.png").toPath()));
+        assertArrayEquals(MISSING, Files.readAllBytes(new File(textures, "missing.png").toPath()));
+        assertFalse(new File(textures, "gone.png").exists());
+
+        // only the failed texture is tried again
+        requests.clear();
+        stats = textureSync().sync(textures, index(), true);
+        assertEquals(3, stats.skipped);
+        assertEquals(1, stats.failed);
+        assertEquals(Arrays.asList("gone.png"), requests);
+    }
+
+    @DisplayName("Download every texture without update")
+    @Test
+    public void noUpdate() throws Exception {
+        File textures = new File(tempDir, "textures");
+        textures.mkdirs();
+        Files.write(new File(textures, "good.png").toPath(), GOOD);
+
+        SyncStats stats = textureSync().sync(textures, index(), false);
+
+        assertEquals(0, stats.skipped);
+        assertEquals(3, stats.fetched);
+        assertEquals(1, stats.failed);
+        assertTrue(requests.contains("good.png"));
+    }
+}
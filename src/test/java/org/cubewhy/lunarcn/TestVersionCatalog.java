@@ -0,0 +1,159 @@
+package org.cubewhy.lunarcn;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import org.cubewhy.launcher.download.Mirror;
+import org.cubewhy.launcher.download.MirrorRegistry;
+import org.cubewhy.launcher.game.VersionCatalog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Version catalog")
+public class TestVersionCatalog {
+    private final MirrorRegistry defaultRegistry = MirrorRegistry.getDefault();
+    private HttpServer server;
+
+    @TempDir
+    File tempDir;
+
+    @AfterEach
+    public void restore() {
+        if (server != null) {
+            server.stop(0);
+        }
+        MirrorRegistry.setDefault(defaultRegistry);
+        VersionCatalog.setSnapshotFile(VersionCatalog.snapshotFile);
+    }
+
+    private static String manifest(String... ids) {
+        StringBuilder versions = new StringBuilder();
+        for (String id : ids) {
+            if (versions.length() > 0) {
+                versions.append(',');
+            }
+            versions.append("{\"id\":\"").append(id).append("\",\"type\":\"").append(id.contains("w") ? "snapshot" : "release")
+                    .append("\",\"url\":\"https://piston-meta.mojang.com/v1/packages/").append(id).append(".json\"}");
+        }
+        return "{\"latest\":{\"release\":\"" + ids[ids.length - 1] + "\"},\"versions\":[" + versions + "]}";
+    }
+
+    /**
+     * Serve the version manifest from a local mirror of the Mojang meta hosts
+     */
+    private void startMeta(String manifest, AtomicInteger requests) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(100); // let concurrent refreshes overlap
+            } catch (InterruptedException ignored) {
+            }
+            byte[] body = manifest.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        MirrorRegistry registry = new MirrorRegistry();
+        registry.setFailurePolicy(1, TimeUnit.HOURS.toMillis(1));
+        Mirror official = registry.addMirror(MirrorRegistry.MOJANG_META, "https://launchermeta.mojang.com/");
+        registry.addMirror(MirrorRegistry.MOJANG_META, "http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        registry.reportFailure(official); // never leave the sandbox
+        MirrorRegistry.setDefault(registry);
+    }
+
+    @DisplayName("Index the versions of a manifest")
+    @Test
+    public void index() {
+        VersionCatalog catalog = new VersionCatalog(JsonParser.parseString(manifest("1.20.1", "23w31a", "1.8.9")).getAsJsonObject(),
+                System.currentTimeMillis());
+        assertEquals(Arrays.asList("1.20.1", "1.8.9"), catalog.getVersions("release"));
+        assertEquals(Arrays.asList("23w31a"), catalog.getVersions("snapshot"));
+        assertTrue(catalog.getVersions("old_alpha").isEmpty());
+        assertEquals("https://piston-meta.mojang.com/v1/packages/1.8.9.json", catalog.getVersion("1.8.9").url);
+        assertNull(catalog.getVersion("1.0"));
+        assertEquals(Arrays.asList("1.20.1", "23w31a", "1.8.9"), catalog.getVersions(catalog.getTypes()));
+        assertEquals(Arrays.asList("23w31a"), catalog.getVersions(Arrays.asList("snapshot", "old_alpha")));
+        assertEquals("1.8.9", catalog.getLatestRelease());
+        assertFalse(catalog.isStale());
+    }
+
+    @DisplayName("Use an old snapshot at once and refresh it in the background")
+    @Test
+    public void snapshot() throws IOException, InterruptedException {
+        AtomicInteger requests = new AtomicInteger();
+        startMeta(manifest("1.20.1", "1.8.9"), requests);
+        File snapshot = new File(tempDir, "version_manifest_v2.json");
+        Files.write(snapshot.toPath(), manifest("1.8.9").getBytes(StandardCharsets.UTF_8));
+        assertTrue(snapshot.setLastModified(System.currentTimeMillis() - VersionCatalog.REFRESH_INTERVAL * 2));
+        VersionCatalog.setSnapshotFile(snapshot);
+
+        VersionCatalog old = VersionCatalog.get();
+        assertEquals(Arrays.asList("1.8.9"), old.getVersions("release"));
+        assertTrue(old.isStale());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        VersionCatalog catalog = old;
+        while (catalog == old && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            catalog = VersionCatalog.get();
+        }
+        assertEquals(Arrays.asList("1.20.1", "1.8.9"), catalog.getVersions("release"));
+        assertFalse(catalog.isStale());
+        assertEquals(1, requests.get());
+        while (!new String(Files.readAllBytes(snapshot.toPath()), StandardCharsets.UTF_8).contains("1.20.1")) {
+            assertTrue(System.currentTimeMillis() < deadline, "snapshot not saved");
+            Thread.sleep(20); // saved after the new catalog is in use
+        }
+
+        // a fresh snapshot is used without the network
+        VersionCatalog.setSnapshotFile(snapshot);
+        assertEquals(Arrays.asList("1.20.1", "1.8.9"), VersionCatalog.get().getVersions("release"));
+        assertEquals(1, requests.get());
+    }
+
+    @DisplayName("Share one download between concurrent refreshes")
+    @Test
+    public void concurrentRefresh() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        startMeta(manifest("1.20.1", "1.8.9"), requests);
+        File snapshot = new File(tempDir, "version_manifest_v2.json");
+        VersionCatalog.setSnapshotFile(snapshot);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<VersionCatalog>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(VersionCatalog::refresh));
+            }
+            for (Future<VersionCatalog> future : futures) {
+                assertSame(futures.get(0).get(), future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, requests.get());
+        assertArrayEquals(new String[]{"version_manifest_v2.json"}, tempDir.list());
+    }
+}
@@ -0,0 +1,87 @@
+package org.cubewhy.lunarcn;
+
+import org.cubewhy.launcher.metrics.Metrics;
+import org.cubewhy.launcher.metrics.MetricsListener;
+import org.cubewhy.launcher.utils.ZipUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Unzip natives")
+public class TestZipUtils {
+    @TempDir
+    File tempDir;
+
+    private File createZip(String... names) throws IOException {
+        File zip = new File(tempDir, "natives.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (String name : names) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(name.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    @DisplayName("Extract once, skip unchanged archives")
+    @Test
+    public void unZipIfChanged() throws IOException {
+        File zip = createZip("lwjgl.dll", "sub/", "sub/OpenAL64.dll");
+        File out = new File(tempDir, "natives");
+        assertTrue(ZipUtils.unZipIfChanged(zip, out));
+        assertEquals("sub/OpenAL64.dll", new String(Files.readAllBytes(new File(out, "sub/OpenAL64.dll").toPath()), StandardCharsets.UTF_8));
+        assertFalse(ZipUtils.unZipIfChanged(zip, out));
+
+        createZip("lwjgl.dll", "jinput.dll");
+        assertTrue(ZipUtils.unZipIfChanged(zip, out));
+        assertTrue(new File(out, "jinput.dll").isFile());
+    }
+
+    @DisplayName("Reject entries outside the target dir")
+    @Test
+    public void zipSlip() throws IOException {
+        File zip = createZip("../evil.dll");
+        assertThrows(IOException.class, () -> ZipUtils.unZip(zip, new File(tempDir, "natives")));
+        assertFalse(new File(tempDir, "evil.dll").exists());
+    }
+
+    @DisplayName("Report failed extractions to metrics listeners")
+    @Test
+    public void failedPhase() throws IOException {
+        File broken = new File(tempDir, "broken.zip");
+        Files.write(broken.toPath(), "not a zip".getBytes(StandardCharsets.UTF_8));
+        File slip = createZip("../evil.dll");
+        List<Boolean> results = new ArrayList<>();
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onPhase(String phase, long nanos, boolean success) {
+                if (phase.equals(Metrics.PHASE_UNZIP)) {
+                    results.add(success);
+                }
+            }
+        };
+        Metrics.addListener(listener);
+        try {
+            assertThrows(ZipException.class, () -> ZipUtils.unZip(broken, new File(tempDir, "natives")));
+            assertThrows(IOException.class, () -> ZipUtils.unZip(slip, new File(tempDir, "natives")));
+        } finally {
+            Metrics.removeListener(listener);
+        }
+        assertEquals(Arrays.asList(false, false), results);
+    }
+}